@@ -0,0 +1,11 @@
+package net.svard;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs the same contract tests with report reads served from the async executor.
+ */
+@ActiveProfiles({"integration-test", "async"})
+public class AsyncTimeReportController extends TimeReportController {
+
+}
@@ -0,0 +1,144 @@
+package net.svard;
+
+import net.svard.domain.ClientReport;
+import net.svard.domain.FlexBalance;
+import net.svard.domain.Report;
+import net.svard.repositories.FlexLedgerRepository;
+import net.svard.repositories.ReportRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+@ActiveProfiles("integration-test")
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class BalanceController {
+
+    private static final long NORM = 28800;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private FlexLedgerRepository flexLedgerRepository;
+
+    private RestTemplate rest = new RestTemplate();
+
+    private List<Report> allReports;
+
+    @Before
+    public void setUp() {
+        reportRepository.deleteAll();
+        allReports = new ArrayList<>();
+        populateRepository();
+        flexLedgerRepository.rebuild();
+    }
+
+    @Test
+    public void getBalance() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        ResponseEntity<FlexBalance> response = rest.exchange("http://localhost:{port}/api/balance", HttpMethod.GET, entity, FlexBalance.class, port);
+        Assert.assertEquals(response.getStatusCodeValue(), HttpStatus.OK.value());
+        Assert.assertEquals(response.getBody().getBalance(), allReports.stream().mapToLong(Report::getTotal).sum() - allReports.size() * NORM);
+    }
+
+    @Test
+    public void getBalanceAtDate() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        ResponseEntity<FlexBalance> response = rest.exchange("http://localhost:{port}/api/balance?date=2016-11-09", HttpMethod.GET, entity, FlexBalance.class, port);
+        Assert.assertEquals(response.getBody().getBalance(), 27780 + 27618 - 2 * NORM);
+    }
+
+    @Test
+    public void balanceFollowsInsertedReports() {
+        // Earlier than every other report, so the whole ledger moves
+        ClientReport body = new ClientReport();
+        body.setWorkTime(30000);
+        body.setLunchTime(3600);
+        body.setArrivalTime(1478415363000L);
+        body.setLeaveTime(1478448963000L);
+        rest.postForEntity("http://localhost:{port}/api/timereport", new HttpEntity<>(body, authorizeHeader()), String.class, port);
+
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+        ResponseEntity<FlexBalance> response = rest.exchange("http://localhost:{port}/api/balance", HttpMethod.GET, entity, FlexBalance.class, port);
+        long expected = allReports.stream().mapToLong(Report::getTotal).sum() + 30000 - (allReports.size() + 1) * NORM;
+        Assert.assertEquals(response.getBody().getBalance(), expected);
+
+        flexLedgerRepository.rebuild("user");
+        Assert.assertEquals(flexLedgerRepository.latest("user", null).getBalance(), expected);
+    }
+
+    private HttpHeaders authorizeHeader() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("Authorization", "Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes()));
+
+        return headers;
+    }
+
+    private void populateRepository() {
+        Report report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1478501763000L));
+        report.setLeave(new Date(1478533253000L));
+        report.setLunch(3600);
+        report.setTotal(27780);
+        allReports.add(report);
+        reportRepository.save(report);
+
+        report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1478674513000L));
+        report.setLeave(new Date(1478705731000L));
+        report.setLunch(3600);
+        report.setTotal(27618);
+        allReports.add(report);
+        reportRepository.save(report);
+
+        report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1479365724000L));
+        report.setLeave(new Date(1479396923000L));
+        report.setLunch(3600);
+        report.setTotal(27599);
+        allReports.add(report);
+        reportRepository.save(report);
+
+        report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1479279351000L));
+        report.setLeave(new Date(1479311714000L));
+        report.setLunch(3600);
+        report.setTotal(28763);
+        allReports.add(report);
+        reportRepository.save(report);
+
+        report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1479106519000L));
+        report.setLeave(new Date(1479139806000L));
+        report.setLunch(3600);
+        report.setTotal(29687);
+        allReports.add(report);
+        reportRepository.save(report);
+    }
+
+}
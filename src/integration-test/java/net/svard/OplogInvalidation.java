@@ -0,0 +1,154 @@
+package net.svard;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClient;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import net.svard.cache.ReportWindow;
+import net.svard.cluster.ReportOplogTailer;
+import net.svard.domain.Report;
+import net.svard.events.ReportInvalidationEvent;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the oplog tailer against a single member replica set, since the shared integration
+ * test database isn't one.
+ */
+public class OplogInvalidation {
+
+    private static MongodExecutable mongod;
+
+    private static MongoClient mongoClient;
+
+    private static MongoTemplate mongoTemplate;
+
+    private BlockingQueue<ReportInvalidationEvent> events = new LinkedBlockingQueue<>();
+
+    private ReportOplogTailer tailer;
+
+    @BeforeClass
+    public static void startReplicaSet() throws Exception {
+        int port = Network.getFreeServerPort();
+        mongod = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+                .version(Version.Main.V3_2)
+                .net(new Net("127.0.0.1", port, false))
+                .replication(new Storage(null, "rs0", 16))
+                .build());
+        mongod.start();
+
+        mongoClient = new MongoClient("127.0.0.1", port);
+        mongoClient.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", "rs0")
+                .append("members", Collections.singletonList(new Document("_id", 0).append("host", "127.0.0.1:" + port)))));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!mongoClient.getDatabase("admin").runCommand(new Document("isMaster", 1)).getBoolean("ismaster")) {
+            Assert.assertTrue("Replica set should elect a primary", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+
+        mongoTemplate = new MongoTemplate(mongoClient, "worktime_manager");
+    }
+
+    @AfterClass
+    public static void stopReplicaSet() {
+        mongoClient.close();
+        mongod.stop();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        tailer = new ReportOplogTailer(mongoClient, mongoTemplate, new ApplicationEventPublisher() {
+            @Override
+            public void publishEvent(ApplicationEvent event) {
+                publishEvent((Object) event);
+            }
+
+            @Override
+            public void publishEvent(Object event) {
+                events.add((ReportInvalidationEvent) event);
+            }
+        }, new MetricRegistry(), 100);
+        tailer.start();
+
+        // Tailing starts from the newest entry once the thread is up
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        tailer.stop();
+        mongoTemplate.remove(new Query(), Report.class);
+    }
+
+    @Test
+    public void insertInvalidatesWindowsOfTheReport() throws Exception {
+        mongoTemplate.insert(report());
+
+        Assert.assertEquals(ReportWindow.ofYearAndWeek("user", 2016, 46), next().getWindow());
+        Assert.assertEquals(ReportWindow.ofYear("user", 2016), next().getWindow());
+        Assert.assertEquals(ReportInvalidationEvent.Type.STATISTIC, next().getType());
+    }
+
+    @Test
+    public void updateInvalidatesWindowsOfTheReport() throws Exception {
+        Report report = report();
+        mongoTemplate.insert(report);
+        next();
+        next();
+        next();
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(report.getId())), Update.update("lunch", 1800L), Report.class);
+
+        Assert.assertEquals(ReportWindow.ofYearAndWeek("user", 2016, 46), next().getWindow());
+    }
+
+    @Test
+    public void writesToOtherCollectionsAreIgnored() throws Exception {
+        mongoTemplate.getCollection("accounts").insert(new BasicDBObject("username", "user"));
+        mongoTemplate.remove(new Query(), Report.class);
+
+        Assert.assertNull("Removing nothing from reports writes no entry", events.poll(2, TimeUnit.SECONDS));
+    }
+
+    private ReportInvalidationEvent next() throws InterruptedException {
+        ReportInvalidationEvent event = events.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull("Expected an invalidation", event);
+
+        return event;
+    }
+
+    private static Report report() {
+        Report report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1479365724000L));
+        report.setLeave(new Date(1479396923000L));
+        report.setLunch(3600);
+        report.setTotal(27599);
+
+        return report;
+    }
+}
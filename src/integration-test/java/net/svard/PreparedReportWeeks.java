@@ -0,0 +1,69 @@
+package net.svard;
+
+import net.svard.domain.Report;
+import net.svard.domain.ReportWeek;
+import net.svard.events.ReportSavedEvent;
+import net.svard.repositories.ReportRepository;
+import net.svard.repositories.ReportWeekRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+@ActiveProfiles("integration-test")
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "timeclock.reports.layout=documents")
+public class PreparedReportWeeks {
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportWeekRepository reportWeekRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Before
+    public void setUp() {
+        reportRepository.deleteAll();
+        reportWeekRepository.deleteAll();
+    }
+
+    @Test
+    public void preparedBucketsFollowWritesBeforeTheSwitch() {
+        save(1478501763000L, 1478533253000L, 27780);
+        reportWeekRepository.rebuild();
+
+        Report report = save(1478674513000L, 1478705731000L, 27618);
+        eventPublisher.publishEvent(new ReportSavedEvent(null, report));
+
+        Assert.assertEquals(2, reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45)).getReports());
+    }
+
+    @Test
+    public void bucketsAreNotStartedWithoutTheLayout() {
+        Report report = save(1478501763000L, 1478533253000L, 27780);
+        eventPublisher.publishEvent(new ReportSavedEvent(null, report));
+
+        Assert.assertEquals(0, reportWeekRepository.count());
+    }
+
+    private Report save(long arrival, long leave, long total) {
+        Report report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(arrival));
+        report.setLeave(new Date(leave));
+        report.setLunch(3600);
+        report.setTotal(total);
+
+        return reportRepository.save(report);
+    }
+}
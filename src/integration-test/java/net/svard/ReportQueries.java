@@ -0,0 +1,74 @@
+package net.svard;
+
+import com.mongodb.DBObject;
+import net.svard.domain.Report;
+import net.svard.repositories.ReportPeriod;
+import net.svard.repositories.ReportRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+@ActiveProfiles("integration-test")
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReportQueries {
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Before
+    public void setUp() {
+        reportRepository.deleteAll();
+
+        Report report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(1478501763000L));
+        report.setLeave(new Date(1478533253000L));
+        report.setLunch(3600);
+        report.setTotal(27780);
+        reportRepository.save(report);
+    }
+
+    @Test
+    public void yearAndWeekQueryUsesIndex() {
+        Query query = Query.query(Criteria.where("accountId").is("user")).addCriteria(ReportPeriod.ofYearAndWeek(2016, 45).toCriteria("arrival"));
+
+        Assert.assertTrue("Week query should scan the arrival index", explain(query).contains("IXSCAN"));
+    }
+
+    @Test
+    public void yearQueryUsesIndex() {
+        Query query = Query.query(Criteria.where("accountId").is("user")).addCriteria(ReportPeriod.ofYear(2016).toCriteria("arrival"));
+
+        Assert.assertTrue("Year query should scan the arrival index", explain(query).contains("IXSCAN"));
+    }
+
+    @Test
+    public void weekQueryMatchesReport() {
+        Assert.assertEquals(1, reportRepository.findByYearAndWeek("user", 2016, 45).size());
+        Assert.assertEquals(1, reportRepository.findByWeek("user", 45).size());
+        Assert.assertEquals(0, reportRepository.findByYearAndWeek("user", 2016, 46).size());
+        Assert.assertEquals(0, reportRepository.findByYearAndWeek("other", 2016, 45).size());
+    }
+
+    private String explain(Query query) {
+        DBObject plan = mongoTemplate.getCollection("reports")
+                .find(query.getQueryObject())
+                .explain();
+
+        return plan.get("queryPlanner").toString();
+    }
+}
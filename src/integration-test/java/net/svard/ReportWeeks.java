@@ -0,0 +1,162 @@
+package net.svard;
+
+import net.svard.domain.Report;
+import net.svard.domain.ReportWeek;
+import net.svard.events.ReportSavedEvent;
+import net.svard.repositories.ReportPeriod;
+import net.svard.repositories.ReportRepository;
+import net.svard.repositories.ReportWeekRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ActiveProfiles("integration-test")
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "timeclock.reports.layout=week-buckets")
+public class ReportWeeks {
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportWeekRepository reportWeekRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Before
+    public void setUp() {
+        reportRepository.deleteAll();
+
+        save(1478501763000L, 1478533253000L, 27780);
+        save(1478674513000L, 1478705731000L, 27618);
+        save(1479106519000L, 1479139806000L, 29687);
+        save(1479279351000L, 1479311714000L, 28763);
+        save(1479365724000L, 1479396923000L, 27599);
+
+        reportWeekRepository.rebuild();
+    }
+
+    @Test
+    public void bucketsHoldTheSameReportsAsDocuments() {
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYear(2016))), ids(reportWeekRepository.findByYear("user", 2016)));
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYearAndWeek(2016, 46))), ids(reportWeekRepository.findByYearAndWeek("user", 2016, 46)));
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYearAndWeek(2016, 46))), ids(reportRepository.findByYearAndWeek("user", 2016, 46)));
+    }
+
+    @Test
+    public void bucketsCarryWeekTotals() {
+        ReportWeek week = reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45));
+
+        Assert.assertEquals(2, week.getReports());
+        Assert.assertEquals(27780 + 27618, week.getTotal());
+        Assert.assertEquals(2 * 3600, week.getLunch());
+    }
+
+    @Test
+    public void editMovesReportBetweenBuckets() {
+        Report previous = reportWeekRepository.findByYearAndWeek("user", 2016, 45).get(0);
+        Report moved = reportRepository.findOne(previous.getId());
+        moved.setArrival(new Date(1479106519000L + 3600000L));
+        moved.setTotal(20000);
+        reportRepository.save(moved);
+
+        eventPublisher.publishEvent(new ReportSavedEvent(previous, moved));
+
+        Assert.assertEquals(1, reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45)).getReports());
+        ReportWeek week = reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 46));
+        Assert.assertEquals(4, week.getReports());
+        Assert.assertEquals(29687 + 28763 + 27599 + 20000, week.getTotal());
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYearAndWeek(2016, 46))), ids(reportWeekRepository.findByYearAndWeek("user", 2016, 46)));
+    }
+
+    @Test
+    public void savingTwiceRecordsOnce() {
+        Report report = reportWeekRepository.findByYearAndWeek("user", 2016, 45).get(0);
+
+        eventPublisher.publishEvent(new ReportSavedEvent(null, report));
+
+        Assert.assertEquals(2, reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45)).getReports());
+    }
+
+    @Test
+    public void deleteRebuildsOnlyItsAccount() {
+        ReportWeek other = new ReportWeek();
+        other.setId(ReportWeek.idOf("other", 2016, 45));
+        other.setAccountId("other");
+        other.setReports(1);
+        reportWeekRepository.save(other);
+
+        reportRepository.delete(reportWeekRepository.findByYearAndWeek("user", 2016, 45).get(0).getId());
+
+        Assert.assertEquals(1, reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45)).getReports());
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYear(2016))), ids(reportWeekRepository.findByYear("user", 2016)));
+        Assert.assertNotNull("Buckets of other accounts are left alone", reportWeekRepository.findOne(ReportWeek.idOf("other", 2016, 45)));
+    }
+
+    @Test
+    public void rebuildRemovesWeeksWithoutReports() {
+        mongoTemplate.remove(Query.query(Criteria.where("arrival").lt(new Date(1479106519000L))), Report.class);
+
+        Assert.assertEquals(1, reportWeekRepository.rebuild("user"));
+        Assert.assertNull(reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 45)));
+        Assert.assertEquals(3, reportWeekRepository.findOne(ReportWeek.idOf("user", 2016, 46)).getReports());
+    }
+
+    @Test
+    public void yearIsReadFromItsOwnAccountOnly() {
+        Report other = new Report();
+        other.setAccountId("user:2016");
+        other.setArrival(new Date(1478501763000L + 60000L));
+        other.setLeave(new Date(1478533253000L));
+        other.setLunch(3600);
+        other.setTotal(27000);
+        reportRepository.save(other);
+        reportWeekRepository.rebuild("user:2016");
+
+        Assert.assertEquals(ids(documents(ReportPeriod.ofYear(2016))), ids(reportWeekRepository.findByYear("user", 2016)));
+    }
+
+    @Test
+    public void bucketsOnlyNeedTheIdIndex() {
+        Assert.assertEquals(1, mongoTemplate.indexOps(ReportWeek.class).getIndexInfo().size());
+    }
+
+    private List<Report> documents(ReportPeriod period) {
+        Query query = Query.query(Criteria.where("accountId").is("user")).addCriteria(period.toCriteria("arrival"))
+                .with(new Sort(Sort.Direction.ASC, "arrival"));
+
+        return mongoTemplate.find(query, Report.class);
+    }
+
+    private static List<String> ids(List<Report> reports) {
+        return reports.stream().map(Report::getId).collect(Collectors.toList());
+    }
+
+    private void save(long arrival, long leave, long total) {
+        Report report = new Report();
+        report.setAccountId("user");
+        report.setArrival(new Date(arrival));
+        report.setLeave(new Date(leave));
+        report.setLunch(3600);
+        report.setTotal(total);
+        reportRepository.save(report);
+    }
+}
@@ -0,0 +1,99 @@
+package net.svard;
+
+import net.svard.domain.Report;
+import net.svard.repositories.ReportRepository;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@ActiveProfiles("integration-test")
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ResponseCompression {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    private RestTemplate rest = new RestTemplate();
+
+    @Before
+    public void setUp() {
+        reportRepository.deleteAll();
+        List<Report> reports = new ArrayList<>();
+
+        // A year of working days
+        for (int i = 0; i < 250; i++) {
+            Report report = new Report();
+            report.setId(new ObjectId().toHexString());
+            report.setAccountId("user");
+            report.setArrival(new Date(1451898000000L + i * 86400000L));
+            report.setLeave(new Date(1451926800000L + i * 86400000L));
+            report.setLunch(3600);
+            report.setTotal(25200 + i % 3600);
+            reports.add(report);
+        }
+
+        reportRepository.insertUnordered(reports);
+    }
+
+    @Test
+    public void yearViewIsGzippedWhenAccepted() throws IOException {
+        ResponseEntity<byte[]> identity = get("/api/timereport?year=2016", null);
+        ResponseEntity<byte[]> gzipped = get("/api/timereport?year=2016", "gzip");
+
+        Assert.assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertArrayEquals(identity.getBody(), gunzip(gzipped.getBody()));
+        Assert.assertTrue("Compressed year view should be less than a quarter of the size",
+                gzipped.getBody().length * 4 < identity.getBody().length);
+    }
+
+    @Test
+    public void smallResponsesAreNotCompressed() {
+        ResponseEntity<byte[]> response = get("/api/timereport?year=2016&week=1", "gzip");
+
+        Assert.assertTrue(response.getBody().length < 2048);
+        Assert.assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private ResponseEntity<byte[]> get(String path, String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Authorization", "Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes()));
+
+        if (acceptEncoding != null) {
+            headers.add(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+
+        return rest.exchange("http://localhost:" + port + path, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+}
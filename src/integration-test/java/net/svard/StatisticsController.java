@@ -1,8 +1,11 @@
 package net.svard;
 
 import net.svard.domain.Report;
+import net.svard.domain.ClientReport;
 import net.svard.domain.Statistic;
+import net.svard.domain.StatisticsCheck;
 import net.svard.repositories.ReportRepository;
+import net.svard.repositories.YearlyStatisticRepository;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +35,9 @@ public class StatisticsController {
     @Autowired
     private ReportRepository reportRepository;
 
+    @Autowired
+    private YearlyStatisticRepository yearlyStatisticRepository;
+
     private RestTemplate rest = new RestTemplate();
 
     private List<Report> allReports;
@@ -41,6 +47,7 @@ public class StatisticsController {
         reportRepository.deleteAll();
         allReports = new ArrayList<>();
         populateRepository();
+        yearlyStatisticRepository.rebuild();
     }
 
     @Test
@@ -53,6 +60,45 @@ public class StatisticsController {
         Assert.assertEquals(response.getBody().get(0).getSum(), allReports.stream().mapToLong(Report::getTotal).sum());
     }
 
+    @Test
+    public void statisticsFollowInsertedReports() {
+        ClientReport body = new ClientReport();
+        body.setWorkTime(27989);
+        body.setLunchTime(3600);
+        body.setArrivalTime(1479452348000L);
+        body.setLeaveTime(1479483937000L);
+        rest.postForEntity("http://localhost:{port}/api/timereport", new HttpEntity<>(body, authorizeHeader()), String.class, port);
+
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+        ResponseEntity<List<Statistic>> response = rest.exchange("http://localhost:{port}/api/statistics", HttpMethod.GET, entity, new ParameterizedTypeReference<List<Statistic>>() {}, port);
+        Assert.assertEquals(response.getBody().get(0).getSum(), allReports.stream().mapToLong(Report::getTotal).sum() + 27989);
+
+        ResponseEntity<StatisticsCheck> check = rest.exchange("http://localhost:{port}/api/statistics/check", HttpMethod.GET, entity, StatisticsCheck.class, port);
+        Assert.assertTrue("Rollup should match the live aggregation", check.getBody().isConsistent());
+    }
+
+    @Test
+    public void getStatisticsPerMonth() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        ResponseEntity<List<Statistic>> response = rest.exchange("http://localhost:{port}/api/statistics?from=2015-06-01&to=2016-12-31&granularity=month", HttpMethod.GET, entity, new ParameterizedTypeReference<List<Statistic>>() {}, port);
+        Assert.assertEquals(1, response.getBody().size());
+        Assert.assertEquals(2016, response.getBody().get(0).getId());
+        Assert.assertEquals(Integer.valueOf(11), response.getBody().get(0).getPeriod());
+        Assert.assertEquals(response.getBody().get(0).getSum(), allReports.stream().mapToLong(Report::getTotal).sum());
+    }
+
+    @Test
+    public void getStatisticsPerWeekInRange() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        // 2016-11-07 through 2016-11-13 only holds reports of week 45
+        ResponseEntity<List<Statistic>> response = rest.exchange("http://localhost:{port}/api/statistics?from=2016-11-07&to=2016-11-13&granularity=week", HttpMethod.GET, entity, new ParameterizedTypeReference<List<Statistic>>() {}, port);
+        Assert.assertEquals(1, response.getBody().size());
+        Assert.assertEquals(Integer.valueOf(45), response.getBody().get(0).getPeriod());
+        Assert.assertEquals(27780 + 27618, response.getBody().get(0).getSum());
+    }
+
     private HttpHeaders authorizeHeader() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -63,6 +109,7 @@ public class StatisticsController {
 
     private void populateRepository() {
         Report report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1478501763000L));
         report.setLeave(new Date(1478533253000L));
         report.setLunch(3600);
@@ -71,6 +118,7 @@ public class StatisticsController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1478674513000L));
         report.setLeave(new Date(1478705731000L));
         report.setLunch(3600);
@@ -79,6 +127,7 @@ public class StatisticsController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479365724000L));
         report.setLeave(new Date(1479396923000L));
         report.setLunch(3600);
@@ -87,6 +136,7 @@ public class StatisticsController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479279351000L));
         report.setLeave(new Date(1479311714000L));
         report.setLunch(3600);
@@ -95,6 +145,7 @@ public class StatisticsController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479106519000L));
         report.setLeave(new Date(1479139806000L));
         report.setLunch(3600);
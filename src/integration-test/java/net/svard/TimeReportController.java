@@ -1,8 +1,15 @@
 package net.svard;
 
+import net.svard.domain.Account;
+import net.svard.domain.BatchResult;
 import net.svard.domain.ClientReport;
+import net.svard.domain.ImportResult;
 import net.svard.domain.Report;
+import net.svard.domain.ReportSummary;
+import net.svard.repositories.AccountRepository;
 import net.svard.repositories.ReportRepository;
+import net.svard.security.ApiTokenAuthenticationFilter;
+import net.svard.security.ApiTokens;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,6 +21,7 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
@@ -32,6 +40,9 @@ public class TimeReportController {
     @Autowired
     private ReportRepository reportRepository;
 
+    @Autowired
+    private AccountRepository accountRepository;
+
     private RestTemplate rest = new RestTemplate();
     private List<Report> allReports;
     private List<Report> week45;
@@ -62,6 +73,119 @@ public class TimeReportController {
 
         Assert.assertEquals(response.getStatusCodeValue(), HttpStatus.CREATED.value());
         Assert.assertNotNull(reportRepository.findOne(id));
+        Assert.assertNotNull("Inserted reports should be stamped", reportRepository.findOne(id).getLastModified());
+        Assert.assertEquals("Anonymous punches belong to the default owner", "user", reportRepository.findOne(id).getAccountId());
+    }
+
+    @Test
+    public void postReportWithApiToken() {
+        accountRepository.deleteAll();
+        Account account = new Account();
+        account.setUsername("clock");
+        account.setApiTokenHash(ApiTokens.hash("token"));
+        accountRepository.save(account);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add(ApiTokenAuthenticationFilter.HEADER, "token");
+        ClientReport body = new ClientReport();
+        body.setWorkTime(27989);
+        body.setLunchTime(3600);
+        body.setArrivalTime(1479452348000L);
+        body.setLeaveTime(1479483937000L);
+
+        ResponseEntity<String> response = rest.postForEntity("http://localhost:{port}/api/timereport", new HttpEntity<>(body, headers), String.class, port);
+        String id = getLastPathSegment(response.getHeaders().getLocation().getPath());
+        Assert.assertEquals("Punches with a token belong to its account", account.getId(), reportRepository.findOne(id).getAccountId());
+
+        headers.set(ApiTokenAuthenticationFilter.HEADER, "guess");
+        try {
+            rest.postForEntity("http://localhost:{port}/api/timereport", new HttpEntity<>(body, headers), String.class, port);
+            Assert.fail("Unknown tokens should be refused");
+        } catch (HttpClientErrorException e) {
+            Assert.assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void getReportsPerWeekNotModified() {
+        HttpHeaders headers = authorizeHeader();
+        ResponseEntity<List<Report>> response = rest.exchange("http://localhost:{port}/api/timereport?year=2016&week=46", HttpMethod.GET, new HttpEntity<>(headers), new ParameterizedTypeReference<List<Report>>() {}, port);
+        String etag = response.getHeaders().getETag();
+        Assert.assertNotNull(etag);
+
+        headers.setIfNoneMatch(etag);
+        response = rest.exchange("http://localhost:{port}/api/timereport?year=2016&week=46", HttpMethod.GET, new HttpEntity<>(headers), new ParameterizedTypeReference<List<Report>>() {}, port);
+        Assert.assertEquals(response.getStatusCodeValue(), HttpStatus.NOT_MODIFIED.value());
+
+        ClientReport body = new ClientReport();
+        body.setWorkTime(27989);
+        body.setLunchTime(3600);
+        body.setArrivalTime(1479452348000L);
+        body.setLeaveTime(1479483937000L);
+        rest.postForEntity("http://localhost:{port}/api/timereport", new HttpEntity<>(body, authorizeHeader()), String.class, port);
+
+        response = rest.exchange("http://localhost:{port}/api/timereport?year=2016&week=46", HttpMethod.GET, new HttpEntity<>(headers), new ParameterizedTypeReference<List<Report>>() {}, port);
+        Assert.assertEquals("A write inside the week should change its tag", response.getStatusCodeValue(), HttpStatus.OK.value());
+        Assert.assertEquals(week46.size() + 1, response.getBody().size());
+    }
+
+    @Test
+    public void postBatchTwice() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        List<ClientReport> body = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            ClientReport clientReport = new ClientReport();
+            clientReport.setClientId("clock-1");
+            clientReport.setWorkTime(27989);
+            clientReport.setLunchTime(3600);
+            clientReport.setArrivalTime(1479452348000L + i * 86400000L);
+            clientReport.setLeaveTime(1479483937000L + i * 86400000L);
+            body.add(clientReport);
+        }
+
+        HttpEntity<List<ClientReport>> entity = new HttpEntity<>(body, headers);
+
+        ResponseEntity<BatchResult> first = rest.postForEntity("http://localhost:{port}/api/timereport/batch", entity, BatchResult.class, port);
+        Assert.assertEquals(3, first.getBody().getCreated());
+
+        ResponseEntity<BatchResult> replay = rest.postForEntity("http://localhost:{port}/api/timereport/batch", entity, BatchResult.class, port);
+        Assert.assertEquals(0, replay.getBody().getCreated());
+        Assert.assertEquals(3, replay.getBody().getDuplicates());
+        Assert.assertEquals(first.getBody().getItems().get(0).getId(), replay.getBody().getItems().get(0).getId());
+        Assert.assertEquals(allReports.size() + 3, reportRepository.count());
+    }
+
+    @Test
+    public void postSameBatchForTwoAccounts() {
+        accountRepository.deleteAll();
+        Account account = new Account();
+        account.setUsername("clock");
+        account.setApiTokenHash(ApiTokens.hash("token"));
+        accountRepository.save(account);
+
+        ClientReport clientReport = new ClientReport();
+        clientReport.setClientId("clock-1");
+        clientReport.setWorkTime(27989);
+        clientReport.setLunchTime(3600);
+        clientReport.setArrivalTime(1479452348000L);
+        clientReport.setLeaveTime(1479483937000L);
+        List<ClientReport> body = new ArrayList<>();
+        body.add(clientReport);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<BatchResult> anonymous = rest.postForEntity("http://localhost:{port}/api/timereport/batch", new HttpEntity<>(body, headers), BatchResult.class, port);
+
+        headers.add(ApiTokenAuthenticationFilter.HEADER, "token");
+        ResponseEntity<BatchResult> other = rest.postForEntity("http://localhost:{port}/api/timereport/batch", new HttpEntity<>(body, headers), BatchResult.class, port);
+
+        Assert.assertEquals(1, anonymous.getBody().getCreated());
+        Assert.assertEquals("Punch keys are only unique within an account", 1, other.getBody().getCreated());
+        Assert.assertNotEquals(anonymous.getBody().getItems().get(0).getId(), other.getBody().getItems().get(0).getId());
+        Assert.assertEquals(account.getId(), reportRepository.findOne(other.getBody().getItems().get(0).getId()).getAccountId());
     }
 
     @Test
@@ -75,6 +199,88 @@ public class TimeReportController {
         Assert.assertTrue("All reports in the database should be in the response", allReports.containsAll(response.getBody()));
     }
 
+    @Test
+    public void getReportsInPages() {
+        HttpHeaders headers = authorizeHeader();
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+        List<Report> pages = new ArrayList<>();
+        String url = "http://localhost:" + port + "/api/timereport?limit=2";
+
+        while (url != null) {
+            ResponseEntity<List<Report>> response = rest.exchange(url, HttpMethod.GET, entity, new ParameterizedTypeReference<List<Report>>() {});
+            Assert.assertTrue("Pages should not exceed the limit", response.getBody().size() <= 2);
+            pages.addAll(response.getBody());
+
+            String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+            url = link != null ? link.replaceFirst("<(.*)>.*", "$1") : null;
+        }
+
+        Assert.assertEquals(allReports.size(), pages.size());
+        Assert.assertTrue("All reports in the database should be in a page", pages.containsAll(allReports));
+    }
+
+    @Test
+    public void getReportsSharingAnArrivalInPages() {
+        Report twin = new Report();
+        twin.setAccountId("user");
+        twin.setArrival(allReports.get(0).getArrival());
+        twin.setLeave(allReports.get(0).getLeave());
+        twin.setLunch(3600);
+        twin.setTotal(27000);
+        reportRepository.save(twin);
+        allReports.add(twin);
+
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+        List<Report> pages = new ArrayList<>();
+        String url = "http://localhost:" + port + "/api/timereport?limit=1";
+
+        // With one report per page the twins are always split by a page boundary
+        while (url != null) {
+            ResponseEntity<List<Report>> response = rest.exchange(url, HttpMethod.GET, entity, new ParameterizedTypeReference<List<Report>>() {});
+            pages.addAll(response.getBody());
+
+            String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+            url = link != null ? link.replaceFirst("<(.*)>.*", "$1") : null;
+        }
+
+        Assert.assertEquals(allReports.size(), pages.size());
+        Assert.assertTrue("Reports sharing an arrival should all be paged", pages.containsAll(allReports));
+    }
+
+    @Test
+    public void streamReports() {
+        HttpHeaders headers = authorizeHeader();
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        ResponseEntity<List<Report>> response = rest.exchange("http://localhost:{port}/api/timereport?stream=true", HttpMethod.GET, entity, new ParameterizedTypeReference<List<Report>>() {}, port);
+        Assert.assertEquals(response.getStatusCodeValue(), HttpStatus.OK.value());
+        Assert.assertTrue("All reports in the database should be streamed", response.getBody().containsAll(allReports));
+        Assert.assertEquals(allReports.size(), response.getBody().size());
+    }
+
+    @Test
+    public void getReportsOfOtherAccountsAreHidden() {
+        Report other = new Report();
+        other.setAccountId("other");
+        other.setArrival(new Date(1478588163000L));
+        other.setLeave(new Date(1478619653000L));
+        other.setLunch(3600);
+        other.setTotal(27890);
+        reportRepository.save(other);
+
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+        ResponseEntity<List<Report>> response = rest.exchange("http://localhost:{port}/api/timereport?year=2016&week=45", HttpMethod.GET, entity, new ParameterizedTypeReference<List<Report>>() {}, port);
+        Assert.assertEquals(week45.size(), response.getBody().size());
+        Assert.assertFalse("Reports of other accounts should not be returned", response.getBody().contains(other));
+
+        try {
+            rest.exchange("http://localhost:{port}/api/timereport/{id}", HttpMethod.GET, entity, Report.class, port, other.getId());
+            Assert.fail("Reports of other accounts should not be found");
+        } catch (HttpClientErrorException e) {
+            Assert.assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+        }
+    }
+
     @Test
     public void getOneReport() {
         String id = allReports.get(3).getId();
@@ -108,10 +314,65 @@ public class TimeReportController {
         Assert.assertTrue("All reports for the requested week should be in the response", allReports.containsAll(response.getBody()));
     }
 
+    @Test
+    public void exportReportsAsCsv() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        ResponseEntity<String> response = rest.exchange("http://localhost:{port}/api/timereport/export?from=2016-01-01&to=2016-12-31", HttpMethod.GET, entity, String.class, port);
+        Assert.assertEquals(response.getStatusCodeValue(), HttpStatus.OK.value());
+        Assert.assertTrue(response.getHeaders().getContentType().isCompatibleWith(MediaType.parseMediaType("text/csv")));
+
+        String[] lines = response.getBody().split("\n");
+        Assert.assertEquals("id,arrival,leave,lunch,total", lines[0]);
+        Assert.assertEquals(allReports.size() + 1, lines.length);
+    }
+
+    @Test
+    public void importReportsFromCsv() {
+        HttpHeaders headers = authorizeHeader();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+        String csv = "arrival,leave,lunch\n"
+                + "2015-03-02T07:00:00Z,2015-03-02T16:00:00Z,3600\n"
+                + "2015-03-03T07:00:00Z,2015-03-03T16:00:00Z,3600\n"
+                + "2015-03-03T07:00:00Z,2015-03-03T16:00:00Z,3600\n"
+                + "2015-03-04T16:00:00Z,2015-03-04T07:00:00Z,3600\n";
+
+        ResponseEntity<ImportResult> response = rest.exchange("http://localhost:{port}/api/timereport/import", HttpMethod.POST, new HttpEntity<>(csv, headers), ImportResult.class, port);
+        Assert.assertEquals(2, response.getBody().getImported());
+        Assert.assertEquals(1, response.getBody().getDuplicates());
+        Assert.assertEquals(1, response.getBody().getRejected());
+        Assert.assertEquals(5, response.getBody().getRejectedRows().get(0).getRow());
+        Assert.assertNull("The server's rejected-row file is not exposed", response.getBody().getRejectedFile());
+        Assert.assertEquals(allReports.size() + 2, reportRepository.count());
+
+        ResponseEntity<List<Report>> year = rest.exchange("http://localhost:{port}/api/timereport?year=2015", HttpMethod.GET, new HttpEntity<>(authorizeHeader()), new ParameterizedTypeReference<List<Report>>() {}, port);
+        Assert.assertEquals(2, year.getBody().size());
+        Assert.assertEquals(28800, year.getBody().get(0).getTotal());
+    }
+
+    @Test
+    public void getSummaryPerWeek() {
+        HttpEntity<String> entity = new HttpEntity<>(authorizeHeader());
+
+        ResponseEntity<List<ReportSummary>> response = rest.exchange("http://localhost:{port}/api/timereport/summary?groupBy=week&year=2016", HttpMethod.GET, entity, new ParameterizedTypeReference<List<ReportSummary>>() {}, port);
+        Assert.assertEquals(2, response.getBody().size());
+
+        ReportSummary first = response.getBody().get(0);
+        Assert.assertEquals(45, first.getPeriod());
+        Assert.assertEquals(week45.size(), first.getDays());
+        Assert.assertEquals(week45.stream().mapToLong(Report::getTotal).sum(), first.getTotal());
+        Assert.assertEquals(first.getTotal() - first.getDays() * 28800, first.getOvertime());
+
+        ReportSummary second = response.getBody().get(1);
+        Assert.assertEquals(46, second.getPeriod());
+        Assert.assertEquals(week46.stream().mapToLong(Report::getLunch).sum(), second.getLunch());
+    }
+
     @Test
     public void updateReport() {
         String id = allReports.get(0).getId();
         Report report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1478501763000L));
         report.setLeave(new Date(1467906953000L));
         report.setLunch(3600);
@@ -128,6 +389,24 @@ public class TimeReportController {
         Assert.assertEquals(report, updatedReport);
     }
 
+    @Test
+    public void updateStaleReportConflicts() {
+        String id = allReports.get(0).getId();
+        Report report = reportRepository.findOne(id);
+        report.setLunch(2700);
+        HttpEntity<Report> entity = new HttpEntity<>(report, authorizeHeader());
+
+        rest.put("http://localhost:{port}/api/timereport/{id}", entity, port, id);
+        Assert.assertEquals(Long.valueOf(report.getVersion() + 1), reportRepository.findOne(id).getVersion());
+
+        try {
+            rest.put("http://localhost:{port}/api/timereport/{id}", entity, port, id);
+            Assert.fail("Updating an old version should conflict");
+        } catch (HttpClientErrorException e) {
+            Assert.assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        }
+    }
+
     private HttpHeaders authorizeHeader() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -138,6 +417,7 @@ public class TimeReportController {
 
     private void populateRepository() {
         Report report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1478501763000L));
         report.setLeave(new Date(1478533253000L));
         report.setLunch(3600);
@@ -147,6 +427,7 @@ public class TimeReportController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1478674513000L));
         report.setLeave(new Date(1478705731000L));
         report.setLunch(3600);
@@ -156,6 +437,7 @@ public class TimeReportController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479365724000L));
         report.setLeave(new Date(1479396923000L));
         report.setLunch(3600);
@@ -165,6 +447,7 @@ public class TimeReportController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479279351000L));
         report.setLeave(new Date(1479311714000L));
         report.setLunch(3600);
@@ -174,6 +457,7 @@ public class TimeReportController {
         reportRepository.save(report);
 
         report = new Report();
+        report.setAccountId("user");
         report.setArrival(new Date(1479106519000L));
         report.setLeave(new Date(1479139806000L));
         report.setLunch(3600);
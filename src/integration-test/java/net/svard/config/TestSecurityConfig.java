@@ -1,5 +1,8 @@
 package net.svard.config;
 
+import net.svard.security.AccountDetailsService;
+import net.svard.security.ApiTokenAuthenticationFilter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
@@ -7,11 +10,16 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Profile("integration-test")
 @Configuration
 @EnableWebSecurity
 public class TestSecurityConfig extends WebSecurityConfigurerAdapter {
+
+    @Autowired
+    private AccountDetailsService accountDetailsService;
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
         auth.inMemoryAuthentication().withUser("user").password("secret").roles("USER");
@@ -19,8 +27,9 @@ public class TestSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
-        http.authorizeRequests()
-                .antMatchers(HttpMethod.POST, "/api/timereport")
+        http.addFilterBefore(new ApiTokenAuthenticationFilter(accountDetailsService), BasicAuthenticationFilter.class)
+                .authorizeRequests()
+                .antMatchers(HttpMethod.POST, "/api/timereport", "/api/timereport/batch")
                     .permitAll()
                 .anyRequest()
                     .authenticated()
@@ -0,0 +1,133 @@
+package net.svard.benchmarks;
+
+import net.svard.JavaTimeclockApplication;
+import net.svard.cache.ReportCache;
+import net.svard.domain.Report;
+import net.svard.domain.Statistic;
+import net.svard.repositories.ReportRepository;
+import net.svard.repositories.YearlyStatisticRepository;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the repository queries against an embedded Mongo seeded with {@code reports}
+ * punches spread evenly over ten years, starting 2007-01-01, and shared round robin between
+ * ten accounts. The queries read the reports of one of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportRepositoryBenchmark {
+
+    private static final long START = 1167609600000L;
+
+    private static final long SPAN = TimeUnit.DAYS.toMillis(3652);
+
+    private static final int SEED_BATCH = 10000;
+
+    private static final int ACCOUNTS = 10;
+
+    private static final String ACCOUNT = "account-0";
+
+    @Param({"1000", "100000", "1000000"})
+    private int reports;
+
+    private ConfigurableApplicationContext context;
+
+    private ReportRepository reportRepository;
+
+    private YearlyStatisticRepository yearlyStatisticRepository;
+
+    private ReportCache reportCache;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = new SpringApplicationBuilder(JavaTimeclockApplication.class)
+                .web(false)
+                .profiles("benchmark")
+                .properties("spring.data.mongodb.port=0", "logging.level.net.svard=WARN")
+                .run();
+        reportRepository = context.getBean(ReportRepository.class);
+        yearlyStatisticRepository = context.getBean(YearlyStatisticRepository.class);
+        reportCache = context.getBean(ReportCache.class);
+
+        reportRepository.deleteAll();
+        List<Report> batch = new ArrayList<>(SEED_BATCH);
+        long step = SPAN / reports;
+
+        for (int i = 0; i < reports; i++) {
+            Report report = new Report();
+            report.setId(new ObjectId().toHexString());
+            report.setAccountId("account-" + i % ACCOUNTS);
+            report.setArrival(new Date(START + i * step));
+            report.setLeave(new Date(START + i * step + 30000000L));
+            report.setLunch(3600);
+            report.setTotal(26400 + (i * 7919) % 3600);
+            batch.add(report);
+
+            if (batch.size() == SEED_BATCH) {
+                reportRepository.insertUnordered(batch);
+                batch.clear();
+            }
+        }
+
+        reportRepository.insertUnordered(batch);
+        yearlyStatisticRepository.rebuild();
+    }
+
+    @Setup(Level.Invocation)
+    public void dropCache() {
+        // Measure the queries themselves, not cache hits
+        reportCache.invalidateAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Report> findByYear() {
+        return reportRepository.findByYear(ACCOUNT, 2012);
+    }
+
+    @Benchmark
+    public List<Report> findByYearAndWeek() {
+        return reportRepository.findByYearAndWeek(ACCOUNT, 2012, 23);
+    }
+
+    @Benchmark
+    public List<Report> findByWeek() {
+        return reportRepository.findByWeek(ACCOUNT, 23);
+    }
+
+    @Benchmark
+    public List<Report> findFirstPage() {
+        return reportRepository.findPage(ACCOUNT, null, 1000);
+    }
+
+    @Benchmark
+    public List<Statistic> stats() {
+        return reportRepository.stats(ACCOUNT);
+    }
+
+    @Benchmark
+    public List<Statistic> statsPerMonth() {
+        return reportRepository.stats(ACCOUNT, null, null, Statistic.Granularity.MONTH);
+    }
+
+    @Benchmark
+    public List<Statistic> statsRollup() {
+        return yearlyStatisticRepository.rollup(ACCOUNT);
+    }
+}
@@ -0,0 +1,90 @@
+package net.svard.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.svard.config.SmileHttpMessageConverter;
+import net.svard.domain.Report;
+import net.svard.domain.Statistic;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes report and statistic lists with the same Jackson configuration the
+ * controllers use, as JSON and as Smile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"7", "250", "10000"})
+    private int reports;
+
+    private ObjectMapper objectMapper;
+
+    private ObjectMapper smileMapper;
+
+    private List<Report> reportList;
+
+    private List<Statistic> statisticList;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        smileMapper = new SmileHttpMessageConverter().getObjectMapper();
+        reportList = new ArrayList<>(reports);
+        statisticList = new ArrayList<>();
+
+        for (int i = 0; i < reports; i++) {
+            Report report = new Report();
+            report.setId(new ObjectId().toHexString());
+            report.setArrival(new Date(1478501763000L + i * 86400000L));
+            report.setLeave(new Date(1478533253000L + i * 86400000L));
+            report.setLunch(3600);
+            report.setTotal(27780);
+            report.setLastModified(new Date());
+            reportList.add(report);
+        }
+
+        for (int year = 2000; year < 2020; year++) {
+            Statistic statistic = new Statistic();
+            statistic.setId(year);
+            statistic.setSum(6500000);
+            statistic.setAvg(27780);
+            statistic.setShortestTime(20000);
+            statistic.setShortestDate(new Date(1478501763000L));
+            statistic.setLongestTime(36000);
+            statistic.setLongestDate(new Date(1478533253000L));
+            statisticList.add(statistic);
+        }
+    }
+
+    @Benchmark
+    public byte[] reports() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(reportList);
+    }
+
+    @Benchmark
+    public byte[] statistics() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(statisticList);
+    }
+
+    @Benchmark
+    public byte[] reportsSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(reportList);
+    }
+
+    @Benchmark
+    public byte[] statisticsSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(statisticList);
+    }
+}
@@ -0,0 +1,84 @@
+package net.svard.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the reports of year and week windows per account. Historical weeks never change, so the
+ * calendar mostly reads from here; writes invalidate only the windows containing the
+ * changed dates. Counters are published on the actuator {@code /metrics} endpoint.
+ */
+@Slf4j
+@Component
+public class ReportCache implements PublicMetrics {
+
+    private final ExpiringLruCache<ReportWindow, List<Report>> cache;
+
+    // Bumped on every invalidation so that a load racing with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public ReportCache(@Value("${timeclock.cache.max-entries:256}") int maxEntries,
+                       @Value("${timeclock.cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.cache = new ExpiringLruCache<>(maxEntries, ttlSeconds * 1000);
+    }
+
+    public List<Report> get(ReportWindow window, Supplier<List<Report>> loader) {
+        List<Report> reports = cache.get(window);
+
+        if (reports == null) {
+            long loadedAt = generation.get();
+            reports = Collections.unmodifiableList(loader.get());
+
+            synchronized (this) {
+                if (generation.get() == loadedAt) {
+                    cache.put(window, reports);
+                }
+            }
+        }
+
+        return reports;
+    }
+
+    public synchronized void invalidate(String accountId, Date date) {
+        generation.incrementAndGet();
+        int removed = cache.removeIf(window -> window.contains(accountId, date));
+        log.debug("Invalidated {} cached windows of {} containing {}", removed, accountId, date);
+    }
+
+    public synchronized void invalidate(ReportWindow window) {
+        generation.incrementAndGet();
+        cache.removeIf(window::equals);
+    }
+
+    public synchronized void invalidateAll(String accountId) {
+        generation.incrementAndGet();
+        int removed = cache.removeIf(window -> window.getAccountId().equals(accountId));
+        log.debug("Invalidated {} cached windows of {}", removed, accountId);
+    }
+
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("cache.reports.size", cache.size()),
+                new Metric<>("cache.reports.hits", cache.getHits()),
+                new Metric<>("cache.reports.misses", cache.getMisses()),
+                new Metric<>("cache.reports.evictions", cache.getEvictions()));
+    }
+}
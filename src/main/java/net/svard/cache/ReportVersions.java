@@ -0,0 +1,103 @@
+package net.svard.cache;
+
+import net.svard.repositories.ReportPeriod;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the report windows of each account, replaced whenever a report inside a window is written.
+ * Entity tags derived from them let unchanged windows be answered with {@code 304 Not Modified}
+ * without querying Mongo. The start time of this instance is part of every tag, so tags issued
+ * before a restart never match.
+ *
+ * At most {@code timeclock.versions.max-entries} versions are kept. A version is a stamp drawn
+ * from one counter of the instance, assigned when a window is first tagged and replaced when it
+ * changes, so a window whose version was evicted is tagged with a stamp it never had before and
+ * old tags stop matching instead of matching again.
+ */
+@Component
+public class ReportVersions {
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final AtomicLong stamps = new AtomicLong();
+
+    // Keyed by ReportWindow, or by the account for its "all" version and its epoch, which is
+    // replaced when any window of the account may have changed, including windows never tagged
+    private final ExpiringLruCache<Object, Long> versions;
+
+    public ReportVersions(@Value("${timeclock.versions.max-entries:10000}") int maxEntries,
+                          @Value("${timeclock.versions.ttl-seconds:86400}") long ttlSeconds) {
+        this.versions = new ExpiringLruCache<>(maxEntries, ttlSeconds * 1000);
+    }
+
+    public String etag(String accountId) {
+        return tag(accountId + "-all", version(accountId, all(accountId)));
+    }
+
+    public String etag(ReportWindow window) {
+        return tag(window.getAccountId() + "-" + window.getKey(), version(window.getAccountId(), window));
+    }
+
+    public void changed(String accountId, Date date) {
+        int year = ReportPeriod.yearOf(date);
+
+        replace(ReportWindow.ofYear(accountId, year));
+        replace(ReportWindow.ofYearAndWeek(accountId, year, ReportPeriod.weekOf(date)));
+        replace(all(accountId));
+    }
+
+    public void changed(ReportWindow window) {
+        replace(window);
+    }
+
+    public void changed(String accountId) {
+        replace(all(accountId));
+    }
+
+    public void changedAll(String accountId) {
+        replace(epochOf(accountId));
+    }
+
+    public void changedAll() {
+        epoch.incrementAndGet();
+    }
+
+    private String version(String accountId, Object key) {
+        return stamp(epochOf(accountId)) + "." + stamp(key);
+    }
+
+    private long stamp(Object key) {
+        synchronized (versions) {
+            Long stamp = versions.get(key);
+
+            if (stamp == null) {
+                stamp = stamps.incrementAndGet();
+                versions.put(key, stamp);
+            }
+
+            return stamp;
+        }
+    }
+
+    private void replace(Object key) {
+        versions.put(key, stamps.incrementAndGet());
+    }
+
+    private String tag(String key, String version) {
+        return "\"" + instance + "-" + epoch.get() + "-" + key + "-" + version + "\"";
+    }
+
+    private static String all(String accountId) {
+        return "all:" + accountId;
+    }
+
+    private static String epochOf(String accountId) {
+        return "epoch:" + accountId;
+    }
+}
@@ -0,0 +1,86 @@
+package net.svard.cache;
+
+import net.svard.repositories.ReportPeriod;
+
+import java.util.Date;
+
+/**
+ * Cache key for a calendar window of the reports of one account, either a whole year or a
+ * week within a year.
+ */
+public final class ReportWindow {
+    private static final int WHOLE_YEAR = -1;
+
+    private final String accountId;
+
+    private final int year;
+
+    private final int week;
+
+    private final ReportPeriod period;
+
+    private ReportWindow(String accountId, int year, int week, ReportPeriod period) {
+        this.accountId = accountId;
+        this.year = year;
+        this.week = week;
+        this.period = period;
+    }
+
+    public static ReportWindow ofYear(String accountId, int year) {
+        return new ReportWindow(accountId, year, WHOLE_YEAR, ReportPeriod.ofYear(year));
+    }
+
+    public static ReportWindow ofYearAndWeek(String accountId, int year, int week) {
+        return new ReportWindow(accountId, year, week, ReportPeriod.ofYearAndWeek(year, week));
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public String getKey() {
+        return week == WHOLE_YEAR ? Integer.toString(year) : year + "w" + week;
+    }
+
+    public ReportPeriod getPeriod() {
+        return period;
+    }
+
+    public boolean contains(String accountId, Date date) {
+        return this.accountId.equals(accountId) && period.contains(date);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReportWindow that = (ReportWindow) o;
+
+        if (year != that.year) return false;
+        if (week != that.week) return false;
+        return accountId.equals(that.accountId);
+
+    }
+
+    @Override
+    public int hashCode() {
+        int result = accountId.hashCode();
+        result = 31 * result + year;
+        result = 31 * result + week;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportWindow{" +
+                "accountId='" + accountId + '\'' +
+                ", year=" + year +
+                (week == WHOLE_YEAR ? "" : ", week=" + week) +
+                '}';
+    }
+}
@@ -0,0 +1,251 @@
+package net.svard.cluster;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.CursorType;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import net.svard.events.ReportInvalidationEvent;
+import net.svard.repositories.ReportPeriod;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the replica set oplog for writes to the reports collection, enabled with
+ * {@code timeclock.cluster.oplog.enabled=true} when several instances share one database.
+ * Each write is published as {@link ReportInvalidationEvent}s, so that the caches and entity
+ * tags of this instance follow the writes of the others. Writes of this instance come back
+ * through the oplog as well, which costs one more invalidation of windows it has already
+ * invalidated.
+ *
+ * Tailing starts at the newest entry when the application starts, and resumes after the
+ * last seen entry when the cursor is lost. If that entry has meanwhile been rolled out of
+ * the oplog, writes may have been missed and everything is invalidated.
+ *
+ * Change streams would do this without reading the oplog directly, but need MongoDB 3.6.
+ * The oplog only exists on a replica set, which may be a single member.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "timeclock.cluster.oplog.enabled", havingValue = "true")
+public class ReportOplogTailer implements SmartLifecycle {
+
+    private static final List<String> WINDOW_FIELDS = Arrays.asList("accountId", "arrival");
+
+    private final MongoClient mongoClient;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MetricRegistry metricRegistry;
+
+    private final long retryMillis;
+
+    private volatile boolean running;
+
+    private Thread tailer;
+
+    @Autowired
+    public ReportOplogTailer(MongoClient mongoClient, MongoTemplate mongoTemplate,
+                             ApplicationEventPublisher eventPublisher, MetricRegistry metricRegistry,
+                             @Value("${timeclock.cluster.oplog.retry-ms:5000}") long retryMillis) {
+        this.mongoClient = mongoClient;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.metricRegistry = metricRegistry;
+        this.retryMillis = retryMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        tailer = new Thread(this::tail, "oplog-tailer");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            tailer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void tail() {
+        MongoCollection<Document> oplog = mongoClient.getDatabase("local").getCollection("oplog.rs");
+        String namespace = mongoTemplate.getDb().getName() + "." + mongoTemplate.getCollectionName(Report.class);
+        BsonTimestamp last = null;
+
+        while (running) {
+            try {
+                if (last == null) {
+                    last = newest(oplog);
+                    log.info("Tailing the oplog for {} from {}", namespace, last);
+                } else if (last.compareTo(oldest(oplog)) < 0) {
+                    log.warn("Oplog has rolled over past {}, invalidating all reports", last);
+                    metricRegistry.counter("counter.oplog.resyncs").inc();
+                    eventPublisher.publishEvent(ReportInvalidationEvent.ofAll());
+                    last = newest(oplog);
+                }
+
+                try (MongoCursor<Document> entries = oplog.find(Filters.and(Filters.gt("ts", last), Filters.eq("ns", namespace)))
+                        .cursorType(CursorType.TailableAwait)
+                        .oplogReplay(true)
+                        .noCursorTimeout(true)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .iterator()) {
+                    while (running) {
+                        Document entry = entries.tryNext();
+
+                        if (entry == null) {
+                            continue;
+                        }
+
+                        last = entry.get("ts", BsonTimestamp.class);
+                        metricRegistry.counter("counter.oplog.entries").inc();
+                        invalidations(entry).forEach(eventPublisher::publishEvent);
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+
+                log.warn("Lost the oplog cursor after {}, retrying in {} ms", last, retryMillis, e);
+
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Translates an oplog entry of the reports collection to the invalidations it causes.
+     * An insert carries the report, so only its windows are invalidated. An update carries
+     * only the changes, and the previous arrival is gone, so everything of the account is
+     * invalidated unless the update left the arrival alone. A delete carries only the id.
+     */
+    List<ReportInvalidationEvent> invalidations(Document entry) {
+        Document change = entry.get("o", Document.class);
+
+        switch (entry.getString("op")) {
+            case "i":
+                return windowsOf(change);
+            case "u":
+                Object id = entry.get("o2", Document.class).get("_id");
+                boolean replaced = change.keySet().stream().noneMatch(key -> key.startsWith("$"));
+                boolean moved = replaced || touches(change, "arrival");
+                Document report = replaced ? change : lookup(id);
+
+                if (report == null || report.getString("accountId") == null) {
+                    return Collections.singletonList(ReportInvalidationEvent.ofAll());
+                }
+
+                return moved
+                        ? Collections.singletonList(ReportInvalidationEvent.ofAccount(report.getString("accountId")))
+                        : windowsOf(report);
+            case "d":
+                return Collections.singletonList(ReportInvalidationEvent.ofAll());
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Reads the account and arrival of a report as they are now.
+     */
+    Document lookup(Object id) {
+        return mongoClient.getDatabase(mongoTemplate.getDb().getName())
+                .getCollection(mongoTemplate.getCollectionName(Report.class))
+                .find(Filters.eq("_id", id))
+                .projection(Projections.include(WINDOW_FIELDS))
+                .first();
+    }
+
+    private static List<ReportInvalidationEvent> windowsOf(Document report) {
+        String accountId = report.getString("accountId");
+        Date arrival = report.getDate("arrival");
+
+        if (accountId == null) {
+            return Collections.singletonList(ReportInvalidationEvent.ofAll());
+        }
+
+        if (arrival == null) {
+            return Collections.singletonList(ReportInvalidationEvent.ofAccount(accountId));
+        }
+
+        int year = ReportPeriod.yearOf(arrival);
+
+        return Arrays.asList(
+                ReportInvalidationEvent.ofWeek(accountId, year, ReportPeriod.weekOf(arrival)),
+                ReportInvalidationEvent.ofYear(accountId, year),
+                ReportInvalidationEvent.ofStatistic(accountId, year));
+    }
+
+    private static boolean touches(Document update, String field) {
+        return update.values().stream()
+                .filter(Document.class::isInstance)
+                .anyMatch(fields -> ((Document) fields).containsKey(field));
+    }
+
+    private static BsonTimestamp newest(MongoCollection<Document> oplog) {
+        Document entry = oplog.find().sort(Sorts.descending("$natural")).projection(Projections.include("ts")).first();
+
+        return entry != null ? entry.get("ts", BsonTimestamp.class) : new BsonTimestamp();
+    }
+
+    private static BsonTimestamp oldest(MongoCollection<Document> oplog) {
+        Document entry = oplog.find().sort(Sorts.ascending("$natural")).projection(Projections.include("ts")).first();
+
+        return entry != null ? entry.get("ts", BsonTimestamp.class) : new BsonTimestamp();
+    }
+}
@@ -0,0 +1,35 @@
+package net.svard.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Serves report reads off the servlet container threads. Spring Boot 1.4 has no WebFlux or
+ * reactive Mongo driver, so the Mongo calls still block, but on this bounded pool instead of
+ * on the Tomcat workers that punch clocks need.
+ */
+@Profile("async")
+@Configuration
+public class AsyncConfig {
+
+    @Bean(name = "reportExecutor")
+    public Executor reportExecutor(@Value("${timeclock.async.pool-size:16}") int poolSize,
+                                   @Value("${timeclock.async.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("report-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        return new DelegatingSecurityContextExecutor(executor);
+    }
+}
@@ -0,0 +1,36 @@
+package net.svard.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Offers Smile next to JSON on the API. Spring Boot adds converter beans to the ones Spring
+ * MVC uses. Every API response varies by {@code Accept} to keep shared caches from mixing
+ * the two up, and Smile responses carry entity tags of their own.
+ */
+@Configuration
+public class ContentNegotiationConfig extends WebMvcConfigurerAdapter {
+
+    @Bean
+    public SmileHttpMessageConverter smileHttpMessageConverter() {
+        return new SmileHttpMessageConverter();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptorAdapter() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                return true;
+            }
+        }).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,20 @@
+package net.svard.config;
+
+import com.codahale.metrics.MetricRegistry;
+import net.svard.metrics.RequestTimingInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class MetricsConfig extends WebMvcConfigurerAdapter {
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestTimingInterceptor(metricRegistry)).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,130 @@
+package net.svard.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Pool, timeout and read preference settings of the Mongo client under
+ * {@code timeclock.mongo}. The driver defaults wait two minutes for a pooled connection and
+ * forever for a socket read, so a slow Mongo would hold every request thread; the defaults
+ * here fail within seconds instead.
+ */
+@ConfigurationProperties("timeclock.mongo")
+public class MongoClientProperties {
+
+    /**
+     * Connections kept open per server even when idle.
+     */
+    private int minConnections = 0;
+
+    /**
+     * Connections per server at most.
+     */
+    private int maxConnections = 100;
+
+    /**
+     * Threads that may wait for a connection, as a multiple of {@code maxConnections}.
+     * Further requests fail at once.
+     */
+    private int waitQueueMultiple = 5;
+
+    /**
+     * How long a thread waits for a pooled connection.
+     */
+    private int maxWaitMs = 2000;
+
+    private int connectTimeoutMs = 2000;
+
+    /**
+     * How long a read may block, which bounds the slowest aggregation.
+     */
+    private int socketTimeoutMs = 30000;
+
+    /**
+     * How long an operation waits for a server to become available.
+     */
+    private int serverSelectionTimeoutMs = 5000;
+
+    /**
+     * Idle connections are closed after this long, 0 keeps them.
+     */
+    private int maxConnectionIdleMs = 60000;
+
+    /**
+     * Read preference of the statistics aggregations. Any mode accepted by
+     * {@code ReadPreference.valueOf}. Reading from secondaries can serve statistics behind
+     * the writes their ETag already covers, and report mismatches from the check endpoint.
+     */
+    private String aggregationReadPreference = "primary";
+
+    public int getMinConnections() {
+        return minConnections;
+    }
+
+    public void setMinConnections(int minConnections) {
+        this.minConnections = minConnections;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getWaitQueueMultiple() {
+        return waitQueueMultiple;
+    }
+
+    public void setWaitQueueMultiple(int waitQueueMultiple) {
+        this.waitQueueMultiple = waitQueueMultiple;
+    }
+
+    public int getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(int maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public int getSocketTimeoutMs() {
+        return socketTimeoutMs;
+    }
+
+    public void setSocketTimeoutMs(int socketTimeoutMs) {
+        this.socketTimeoutMs = socketTimeoutMs;
+    }
+
+    public int getServerSelectionTimeoutMs() {
+        return serverSelectionTimeoutMs;
+    }
+
+    public void setServerSelectionTimeoutMs(int serverSelectionTimeoutMs) {
+        this.serverSelectionTimeoutMs = serverSelectionTimeoutMs;
+    }
+
+    public int getMaxConnectionIdleMs() {
+        return maxConnectionIdleMs;
+    }
+
+    public void setMaxConnectionIdleMs(int maxConnectionIdleMs) {
+        this.maxConnectionIdleMs = maxConnectionIdleMs;
+    }
+
+    public String getAggregationReadPreference() {
+        return aggregationReadPreference;
+    }
+
+    public void setAggregationReadPreference(String aggregationReadPreference) {
+        this.aggregationReadPreference = aggregationReadPreference;
+    }
+}
@@ -0,0 +1,50 @@
+package net.svard.config;
+
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * Client options for the auto-configured {@code MongoClient}, and a second template for the
+ * statistics aggregations that may read from secondaries. Declaring that template replaces
+ * the auto-configured one, so the primary template is declared here as well.
+ */
+@Configuration
+@EnableConfigurationProperties(MongoClientProperties.class)
+public class MongoConfig {
+
+    @Bean
+    public MongoClientOptions mongoClientOptions(MongoClientProperties properties) {
+        return MongoClientOptions.builder()
+                .minConnectionsPerHost(properties.getMinConnections())
+                .connectionsPerHost(properties.getMaxConnections())
+                .threadsAllowedToBlockForConnectionMultiplier(properties.getWaitQueueMultiple())
+                .maxWaitTime(properties.getMaxWaitMs())
+                .connectTimeout(properties.getConnectTimeoutMs())
+                .socketTimeout(properties.getSocketTimeoutMs())
+                .serverSelectionTimeout(properties.getServerSelectionTimeoutMs())
+                .maxConnectionIdleTime(properties.getMaxConnectionIdleMs())
+                .build();
+    }
+
+    @Primary
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDbFactory mongoDbFactory, MongoConverter converter) {
+        return new MongoTemplate(mongoDbFactory, converter);
+    }
+
+    @Bean(name = "aggregationMongoTemplate")
+    public MongoTemplate aggregationMongoTemplate(MongoDbFactory mongoDbFactory, MongoConverter converter,
+                                                  MongoClientProperties properties) {
+        MongoTemplate template = new MongoTemplate(mongoDbFactory, converter);
+        template.setReadPreference(ReadPreference.valueOf(properties.getAggregationReadPreference()));
+
+        return template;
+    }
+}
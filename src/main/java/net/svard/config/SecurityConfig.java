@@ -1,7 +1,9 @@
 package net.svard.config;
 
-import net.svard.repositories.AccountRepository;
+import net.svard.security.AccountDetailsService;
+import net.svard.security.ApiTokenAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -10,10 +12,8 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 @Profile("default")
@@ -22,24 +22,26 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Autowired
-    private AccountRepository accountRepository;
+    private AccountDetailsService accountDetailsService;
+
+    @Value("${timeclock.security.punch-requires-token:false}")
+    private boolean punchRequiresToken;
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(new UserDetailsService() {
-            @Override
-            public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-                UserDetails user = accountRepository.findOneByUsername(username);
-                return user;
-            }
-        }).passwordEncoder(bcrypt());
+        auth.userDetailsService(accountDetailsService).passwordEncoder(bcrypt());
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
-        http.authorizeRequests()
-                .antMatchers(HttpMethod.POST, "/api/timereport")
-                    .permitAll()
+        if (!punchRequiresToken) {
+            http.authorizeRequests()
+                    .antMatchers(HttpMethod.POST, "/api/timereport", "/api/timereport/batch")
+                        .permitAll();
+        }
+
+        http.addFilterBefore(new ApiTokenAuthenticationFilter(accountDetailsService), UsernamePasswordAuthenticationFilter.class)
+                .authorizeRequests()
                 .anyRequest()
                     .authenticated()
                     .and()
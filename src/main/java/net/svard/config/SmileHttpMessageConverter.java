@@ -0,0 +1,35 @@
+package net.svard.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reads and writes Smile, Jackson's binary encoding of the JSON data model, for clients that
+ * ask for it with {@code application/x-jackson-smile}. JSON stays the default. Dates are
+ * always written as epoch milliseconds.
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    public SmileHttpMessageConverter() {
+        super(smileMapper(), SMILE);
+        // Binary content, no charset
+        setDefaultCharset(null);
+    }
+
+    private static ObjectMapper smileMapper() {
+        ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+        Jackson2ObjectMapperBuilder.json()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .configure(objectMapper);
+
+        return objectMapper;
+    }
+}
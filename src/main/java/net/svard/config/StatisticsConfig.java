@@ -0,0 +1,32 @@
+package net.svard.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs the per-year aggregations of a statistics range. The pool bounds how many Mongo
+ * connections a single range can hold at once. When it is saturated the requesting thread
+ * runs the aggregation itself instead of failing the request.
+ */
+@Configuration
+public class StatisticsConfig {
+
+    @Bean(name = "statisticsExecutor")
+    public Executor statisticsExecutor(@Value("${timeclock.statistics.parallelism:4}") int parallelism,
+                                       @Value("${timeclock.statistics.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("statistics-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+
+        return executor;
+    }
+}
@@ -0,0 +1,59 @@
+package net.svard.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Account;
+import net.svard.domain.ApiToken;
+import net.svard.repositories.AccountRepository;
+import net.svard.security.ApiTokens;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/account")
+public class AccountController {
+
+    private AccountRepository accountRepository;
+
+    @Autowired
+    public AccountController(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Issues a new API token for the punch clocks of the signed in account, replacing the
+     * previous one. Only a hash is stored, so the token can't be shown again.
+     */
+    @RequestMapping(value = "/token", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public ApiToken createToken(Principal principal) {
+        Account account = principal != null ? accountRepository.findOneByUsername(principal.getName()) : null;
+
+        if (account == null) {
+            throw new AccessDeniedException("API tokens can only be issued to accounts");
+        }
+
+        String token = ApiTokens.generate();
+        account.setApiTokenHash(ApiTokens.hash(token));
+        accountRepository.save(account);
+
+        log.info("Issued a new API token for {}", account.getUsername());
+
+        return new ApiToken(token);
+    }
+
+    @ExceptionHandler(AccessDeniedException.class)
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    public String accessDenied(AccessDeniedException e) {
+        return e.getMessage();
+    }
+}
@@ -0,0 +1,76 @@
+package net.svard.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.cache.ReportVersions;
+import net.svard.config.SmileHttpMessageConverter;
+import net.svard.domain.FlexBalance;
+import net.svard.domain.FlexCheckpoint;
+import net.svard.repositories.FlexLedgerRepository;
+import net.svard.security.AccountResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/balance")
+public class BalanceController {
+
+    @Autowired
+    private FlexLedgerRepository flexLedgerRepository;
+
+    @Autowired
+    private ReportVersions reportVersions;
+
+    @Autowired
+    private AccountResolver accountResolver;
+
+    @Value("${timeclock.workday.norm:28800}")
+    private long workdayNorm;
+
+    /**
+     * The flexitime balance of the current account, in seconds, at the end of {@code date}
+     * or of its last reported day.
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public FlexBalance getBalance(
+            @RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest request) {
+        String accountId = accountResolver.currentAccountId();
+
+        if (request.checkNotModified(EntityTags.of(request, reportVersions.etag(accountId)))) {
+            return null;
+        }
+
+        Date until = date == null ? null : Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+        FlexCheckpoint checkpoint = flexLedgerRepository.latest(accountId, until);
+
+        return checkpoint == null
+                ? new FlexBalance(0, null, workdayNorm)
+                : new FlexBalance(checkpoint.getBalance(), checkpoint.getDay(), workdayNorm);
+    }
+
+    /**
+     * Recomputes the ledger of the current account from its reports.
+     */
+    @RequestMapping(value = "/rebuild", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void rebuildBalance() {
+        String accountId = accountResolver.currentAccountId();
+
+        log.info("Rebuilding flexitime ledger of {}", accountId);
+        flexLedgerRepository.rebuild(accountId);
+    }
+}
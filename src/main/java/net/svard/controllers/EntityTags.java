@@ -0,0 +1,89 @@
+package net.svard.controllers;
+
+import net.svard.config.SmileHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+
+/**
+ * Conditional GETs against the entity tag of a response that isn't built yet.
+ * {@link WebRequest#checkNotModified(String)} sets the tag on every response it checks, which
+ * would also label a fallback to an older result with the current tag, so it is only called
+ * once {@code If-None-Match} is known to match.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * The tag of the representation the request negotiates. JSON and Smile carry the same
+     * reports in different bytes, so a Smile response is tagged apart from the JSON one.
+     */
+    static String of(WebRequest request, String etag) {
+        return acceptsSmile(request) ? etag.substring(0, etag.length() - 1) + "-smile\"" : etag;
+    }
+
+    /**
+     * Whether the request prefers Smile over JSON, the way content negotiation picks between
+     * the two. Requests without an {@code Accept} header, or with one that can't be parsed, get JSON.
+     */
+    private static boolean acceptsSmile(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+        if (accept == null) {
+            return false;
+        }
+
+        List<MediaType> accepted;
+
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+
+        MediaType.sortBySpecificityAndQuality(accepted);
+
+        for (MediaType type : accepted) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            } else if (type.includes(SmileHttpMessageConverter.SMILE)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Whether the client already has the representation tagged {@code etag}, in which case
+     * the response is a {@code 304} and nothing more should be written.
+     */
+    static boolean notModified(WebRequest request, String etag) {
+        String[] ifNoneMatch = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String header : ifNoneMatch) {
+            for (String candidate : header.split(",")) {
+                String tag = candidate.trim();
+
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return request.checkNotModified(etag);
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,178 @@
+package net.svard.controllers;
+
+import com.codahale.metrics.MetricRegistry;
+import net.svard.cache.ExpiringLruCache;
+import net.svard.domain.Report;
+import net.svard.events.ReportInvalidationEvent;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.exceptions.LaneUnavailableException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the repository part of a request and completes a {@link DeferredResult} with it.
+ * With the {@code async} profile the work is handed to the bounded {@code reportExecutor},
+ * so the servlet container thread is released while Mongo is queried. Otherwise it runs
+ * inline and the request behaves as a plain synchronous one.
+ *
+ * Work runs in one of three {@link ReportLane}s, each with its own concurrency limit and
+ * circuit breaker, so that a slow dashboard query can only hold the slots of its own lane
+ * and never those that punches are written through. Reads and aggregations fall back to
+ * their last good result for the same key, which is dropped as soon as the reports of its
+ * account change.
+ */
+@Component
+class ReportDispatcher {
+
+    enum Lane {
+        READS, WRITES, AGGREGATIONS
+    }
+
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    private Executor executor;
+
+    private long timeout;
+
+    private Map<Lane, ReportLane> lanes = new EnumMap<>(Lane.class);
+
+    @Autowired
+    ReportDispatcher(@Qualifier("reportExecutor") ObjectProvider<Executor> executor,
+                     @Value("${timeclock.async.timeout-ms:10000}") long timeout,
+                     MetricRegistry metricRegistry,
+                     @Value("${timeclock.lanes.reads.max-concurrent:16}") int maxReads,
+                     @Value("${timeclock.lanes.writes.max-concurrent:16}") int maxWrites,
+                     @Value("${timeclock.lanes.aggregations.max-concurrent:4}") int maxAggregations,
+                     @Value("${timeclock.lanes.failure-threshold:5}") int failureThreshold,
+                     @Value("${timeclock.lanes.open-ms:10000}") long openMillis,
+                     @Value("${timeclock.lanes.fallback-entries:1000}") int fallbackEntries,
+                     @Value("${timeclock.lanes.fallback-ttl-seconds:86400}") long fallbackTtlSeconds) {
+        Executor reportExecutor = executor.getIfAvailable();
+        this.executor = reportExecutor != null ? reportExecutor : Runnable::run;
+        this.timeout = timeout;
+
+        lanes.put(Lane.READS, new ReportLane("reads", maxReads, failureThreshold, openMillis,
+                new ExpiringLruCache<>(fallbackEntries, fallbackTtlSeconds * 1000), metricRegistry));
+        lanes.put(Lane.WRITES, new ReportLane("writes", maxWrites, failureThreshold, openMillis,
+                null, metricRegistry));
+        lanes.put(Lane.AGGREGATIONS, new ReportLane("aggregations", maxAggregations, failureThreshold, openMillis,
+                new ExpiringLruCache<>(fallbackEntries, fallbackTtlSeconds * 1000), metricRegistry));
+    }
+
+    /**
+     * Runs the work in the lane and completes the result with it, tagged with {@code etag},
+     * or with the last good result for {@code key}, which must start with the account. The
+     * last good result may predate {@code etag}, so it goes out untagged and uncacheable.
+     */
+    <T> DeferredResult<ResponseEntity<T>> dispatch(Lane lane, String key, String etag, Supplier<ResponseEntity<T>> work) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(timeout);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    ReportLane.Outcome<ResponseEntity<T>> outcome = lanes.get(lane).attempt(key, work);
+                    ResponseEntity<T> response = outcome.getValue();
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusCode())
+                            .headers(response.getHeaders());
+
+                    if (outcome.isFallback()) {
+                        builder.cacheControl(CacheControl.noStore())
+                                .header(HttpHeaders.WARNING, STALE_WARNING);
+                    } else if (etag != null) {
+                        builder.eTag(etag);
+                    }
+
+                    result.setResult(builder.body(response.getBody()));
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.setErrorResult(new LaneUnavailableException(lane.name().toLowerCase(Locale.ROOT), 1));
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the work in the lane on the calling thread, without a fallback.
+     */
+    <T> T call(Lane lane, Supplier<T> work) {
+        return lanes.get(lane).call(null, work);
+    }
+
+    void run(Lane lane, Runnable work) {
+        call(lane, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        if (event.getPrevious() != null) {
+            forget(event.getPrevious().getAccountId());
+        }
+
+        forget(event.getReport().getAccountId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        event.getReports().stream()
+                .map(Report::getAccountId)
+                .distinct()
+                .forEach(this::forget);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsImported(ReportsImportedEvent event) {
+        forget(event.getAccountId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsInvalidated(ReportInvalidationEvent event) {
+        if (event.getAccountId() != null) {
+            forget(event.getAccountId());
+        } else {
+            lanes.values().forEach(ReportLane::forgetAll);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsDeleted(AfterDeleteEvent<?> event) {
+        // Deletes only carry the query, so the affected accounts are unknown
+        if (Report.class.equals(event.getType())) {
+            lanes.values().forEach(ReportLane::forgetAll);
+        }
+    }
+
+    private void forget(String accountId) {
+        lanes.values().forEach(lane -> lane.forget(accountId));
+    }
+}
@@ -0,0 +1,231 @@
+package net.svard.controllers;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.cache.ExpiringLruCache;
+import net.svard.exceptions.LaneUnavailableException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * A bulkhead and circuit breaker for one kind of repository work. At most
+ * {@code maxConcurrent} calls run at once and further calls are refused rather than queued.
+ * After {@code failureThreshold} consecutive Mongo failures the breaker opens and refuses all
+ * calls for {@code openMillis}, then lets a single trial call through to decide whether to
+ * close again.
+ *
+ * A refused or failed call is answered with the last good result for the same key when the
+ * lane keeps results, and a refused call without one fails with a
+ * {@link LaneUnavailableException}. Keys must start with the account and a colon, so that
+ * the results of an account can be dropped when its reports change.
+ */
+@Slf4j
+class ReportLane {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+
+    private final Semaphore slots;
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final ExpiringLruCache<String, Object> lastGood;
+
+    private final MetricRegistry metricRegistry;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    ReportLane(String name, int maxConcurrent, int failureThreshold, long openMillis,
+               ExpiringLruCache<String, Object> lastGood, MetricRegistry metricRegistry) {
+        this.name = name;
+        this.slots = new Semaphore(maxConcurrent);
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.lastGood = lastGood;
+        this.metricRegistry = metricRegistry;
+
+        metricRegistry.register("gauge.lane." + name + ".active", (Gauge<Integer>) () -> maxConcurrent - slots.availablePermits());
+        metricRegistry.register("gauge.lane." + name + ".open", (Gauge<Integer>) () -> isOpen() ? 1 : 0);
+    }
+
+    /**
+     * Runs the work in this lane. {@code key} names the result for later fallbacks and may be
+     * {@code null} when the result should not be kept.
+     */
+    <T> T call(String key, Supplier<T> work) {
+        return attempt(key, work).getValue();
+    }
+
+    /**
+     * Runs the work in this lane like {@link #call}, telling a fresh result from a fallback.
+     */
+    <T> Outcome<T> attempt(String key, Supplier<T> work) {
+        if (!admit()) {
+            metricRegistry.counter("counter.lane." + name + ".short-circuited").inc();
+            return fallback(key, retryAfter(), null);
+        }
+
+        if (!slots.tryAcquire()) {
+            release();
+            metricRegistry.counter("counter.lane." + name + ".rejected").inc();
+            return fallback(key, 1, null);
+        }
+
+        try {
+            T result = work.get();
+            succeeded();
+
+            if (key != null && lastGood != null) {
+                lastGood.put(key, result);
+            }
+
+            return new Outcome<>(result, false);
+        } catch (RuntimeException e) {
+            if (!isFailure(e)) {
+                succeeded();
+                throw e;
+            }
+
+            failed(e);
+            return fallback(key, retryAfter(), e);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Drops the last good results of the account, whose reports have changed.
+     */
+    void forget(String accountId) {
+        if (lastGood != null) {
+            lastGood.removeIf(key -> key.startsWith(accountId + ":"));
+        }
+    }
+
+    void forgetAll() {
+        if (lastGood != null) {
+            lastGood.clear();
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Whether the breaker lets a call through. An open breaker lets the first call after
+     * {@code openMillis} through as the trial.
+     */
+    private synchronized boolean admit() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Gives up the trial of an admitted call that couldn't get a slot.
+     */
+    private synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    private synchronized void succeeded() {
+        if (state == State.HALF_OPEN) {
+            log.info("Closing the circuit of the {} lane", name);
+        }
+
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    private synchronized void failed(RuntimeException e) {
+        metricRegistry.counter("counter.lane." + name + ".failures").inc();
+        failures++;
+
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state == State.CLOSED) {
+                log.warn("Opening the circuit of the {} lane after {} failures", name, failures, e);
+            }
+
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    private synchronized long retryAfter() {
+        if (state == State.CLOSED) {
+            return 1;
+        }
+
+        long remaining = openedAt + openMillis - System.currentTimeMillis();
+
+        return Math.max(1, (remaining + 999) / 1000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Outcome<T> fallback(String key, long retryAfter, RuntimeException failure) {
+        Object result = key != null && lastGood != null ? lastGood.get(key) : null;
+
+        if (result != null) {
+            metricRegistry.counter("counter.lane." + name + ".fallbacks").inc();
+            return new Outcome<>((T) result, true);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        throw new LaneUnavailableException(name, retryAfter);
+    }
+
+    /**
+     * The result of a call, and whether it is the last good result of an earlier call
+     * rather than a fresh one.
+     */
+    static class Outcome<T> {
+        private final T value;
+
+        private final boolean fallback;
+
+        Outcome(T value, boolean fallback) {
+            this.value = value;
+            this.fallback = fallback;
+        }
+
+        T getValue() {
+            return value;
+        }
+
+        boolean isFallback() {
+            return fallback;
+        }
+    }
+
+    /**
+     * Whether the exception means Mongo is in trouble, as opposed to the request being at
+     * fault, as with a duplicate key.
+     */
+    private static boolean isFailure(RuntimeException e) {
+        return (e instanceof DataAccessException && !(e instanceof DataIntegrityViolationException))
+                || e instanceof MongoException;
+    }
+}
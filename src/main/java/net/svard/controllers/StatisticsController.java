@@ -1,24 +1,116 @@
 package net.svard.controllers;
 
+import lombok.extern.slf4j.Slf4j;
+import net.svard.cache.ReportVersions;
+import net.svard.config.SmileHttpMessageConverter;
 import net.svard.domain.Statistic;
+import net.svard.domain.StatisticsCheck;
+import net.svard.exceptions.LaneUnavailableException;
 import net.svard.repositories.ReportRepository;
+import net.svard.repositories.YearlyStatisticRepository;
+import net.svard.security.AccountResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/statistics")
 public class StatisticsController {
 
+    @Autowired
+    private YearlyStatisticRepository yearlyStatisticRepository;
+
     @Autowired
     private ReportRepository reportRepository;
 
-    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public List<Statistic> getStatistics() {
-        return reportRepository.stats();
+    @Autowired
+    private ReportVersions reportVersions;
+
+    @Autowired
+    private ReportDispatcher reportDispatcher;
+
+    @Autowired
+    private AccountResolver accountResolver;
+
+    /**
+     * Whole years of all time are read from the rollup. A range or a finer granularity is
+     * aggregated from the reports, with {@code from} and {@code to} whole days in UTC and
+     * inclusive.
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public DeferredResult<ResponseEntity<List<Statistic>>> getStatistics(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "granularity", defaultValue = "year") String granularity,
+            WebRequest request) {
+        String accountId = accountResolver.currentAccountId();
+        Statistic.Granularity grouping = Statistic.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+
+        String etag = EntityTags.of(request, reportVersions.etag(accountId));
+
+        if (EntityTags.notModified(request, etag)) {
+            return null;
+        }
+
+        if (from == null && to == null && grouping == Statistic.Granularity.YEAR) {
+            return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, accountId + ":rollup", etag,
+                    () -> ResponseEntity.ok(yearlyStatisticRepository.rollup(accountId)));
+        }
+
+        Date start = from != null ? Date.from(from.atStartOfDay(ZoneOffset.UTC).toInstant()) : null;
+        Date end = to != null ? Date.from(to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()) : null;
+
+        return reportDispatcher.dispatch(ReportDispatcher.Lane.AGGREGATIONS, accountId + ":stats:" + from + ":" + to + ":" + grouping, etag,
+                () -> ResponseEntity.ok(reportRepository.stats(accountId, start, end, grouping)));
+    }
+
+    /**
+     * Recomputes the rollup of the current account from its reports.
+     */
+    @RequestMapping(value = "/rebuild", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void rebuildStatistics() {
+        String accountId = accountResolver.currentAccountId();
+
+        log.info("Rebuilding statistics rollup of {}", accountId);
+        yearlyStatisticRepository.rebuild(accountId);
+    }
+
+    @RequestMapping(value = "/check", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public StatisticsCheck checkStatistics() {
+        String accountId = accountResolver.currentAccountId();
+
+        return reportDispatcher.call(ReportDispatcher.Lane.AGGREGATIONS, () -> yearlyStatisticRepository.check(accountId));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(LaneUnavailableException.class)
+    public ResponseEntity<String> laneUnavailable(LaneUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter()))
+                .body(e.getMessage());
     }
 }
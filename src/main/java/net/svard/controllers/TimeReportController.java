@@ -1,77 +1,298 @@
 package net.svard.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
+import net.svard.cache.ReportVersions;
+import net.svard.cache.ReportWindow;
+import net.svard.config.SmileHttpMessageConverter;
+import net.svard.domain.BatchItemResult;
+import net.svard.domain.BatchResult;
 import net.svard.domain.ClientReport;
+import net.svard.domain.ImportResult;
 import net.svard.domain.Report;
+import net.svard.domain.ReportCursor;
+import net.svard.domain.ReportPatch;
+import net.svard.domain.ReportSummary;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.exceptions.LaneUnavailableException;
+import net.svard.exceptions.ReportConflictException;
 import net.svard.exceptions.ReportNotFoundException;
+import net.svard.export.ExportFormat;
+import net.svard.feed.ReportBroadcaster;
+import net.svard.ingestion.CsvReportImporter;
+import net.svard.ingestion.IngestionQueue;
 import net.svard.repositories.ReportRepository;
+import net.svard.security.AccountResolver;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/timereport")
 public class TimeReportController {
 
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String EVENT_STREAM_VALUE = "text/event-stream";
+
+    private static final String INVALID_REPORT = "Leave must not precede arrival";
+
     private ReportRepository reportRepository;
 
+    private ApplicationEventPublisher eventPublisher;
+
+    private ObjectMapper objectMapper;
+
+    private ReportVersions reportVersions;
+
+    private ReportDispatcher reportDispatcher;
+
+    private IngestionQueue ingestionQueue;
+
+    private AccountResolver accountResolver;
+
+    private CsvReportImporter csvReportImporter;
+
+    private ReportBroadcaster reportBroadcaster;
+
+    @Value("${timeclock.reports.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${timeclock.reports.batch-size:500}")
+    private int batchSize;
+
+    @Value("${timeclock.workday.norm:28800}")
+    private long workdayNorm;
+
     @Autowired
-    public TimeReportController(ReportRepository reportRepository) {
+    public TimeReportController(ReportRepository reportRepository, ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper, ReportVersions reportVersions,
+                                ReportDispatcher reportDispatcher, ObjectProvider<IngestionQueue> ingestionQueue,
+                                AccountResolver accountResolver, CsvReportImporter csvReportImporter,
+                                ReportBroadcaster reportBroadcaster) {
         this.reportRepository = reportRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.reportVersions = reportVersions;
+        this.reportDispatcher = reportDispatcher;
+        this.ingestionQueue = ingestionQueue.getIfAvailable();
+        this.accountResolver = accountResolver;
+        this.csvReportImporter = csvReportImporter;
+        this.reportBroadcaster = reportBroadcaster;
     }
 
-    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public List<Report> getReports(
+    @RequestMapping(method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public DeferredResult<ResponseEntity<List<Report>>> getReports(
             @RequestParam(value = "week", defaultValue = "0") int week,
-            @RequestParam(value = "year", defaultValue = "0") int year) {
+            @RequestParam(value = "year", defaultValue = "0") int year,
+            @RequestParam(value = "limit", defaultValue = "0") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            WebRequest request) {
+
+        String accountId = accountResolver.currentAccountId();
+        String etag = EntityTags.of(request, year > 0 && week > 0 ? reportVersions.etag(ReportWindow.ofYearAndWeek(accountId, year, week))
+                : year > 0 ? reportVersions.etag(ReportWindow.ofYear(accountId, year))
+                : reportVersions.etag(accountId));
 
-        List<Report> reports;
+        if (EntityTags.notModified(request, etag)) {
+            return null;
+        }
 
         if (year > 0 && week > 0) {
-            reports = reportRepository.findByYearAndWeek(year, week);
+            return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, accountId + ":" + year + "w" + week, etag,
+                    () -> ResponseEntity.ok(reportRepository.findByYearAndWeek(accountId, year, week)));
         } else if (year > 0) {
-            reports = reportRepository.findByYear(year);
+            return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, accountId + ":" + year, etag,
+                    () -> ResponseEntity.ok(reportRepository.findByYear(accountId, year)));
         } else if (week > 0) {
-            reports = reportRepository.findByWeek(week);
-        } else {
-            reports = reportRepository.findAll();
+            return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, accountId + ":w" + week, etag,
+                    () -> ResponseEntity.ok(reportRepository.findByWeek(accountId, week)));
         }
 
-        return reports;
+        int pageSize = limit > 0 ? Math.min(limit, maxPageSize) : maxPageSize;
+        ReportCursor cursor = after != null ? ReportCursor.parse(after) : null;
+        UriComponentsBuilder self = ServletUriComponentsBuilder.fromCurrentRequest();
+
+        return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, accountId + ":page:" + after + ":" + pageSize, etag, () -> {
+            List<Report> reports = reportRepository.findPage(accountId, cursor, pageSize);
+
+            if (reports.size() < pageSize) {
+                return ResponseEntity.ok(reports);
+            }
+
+            String next = self
+                    .replaceQueryParam("limit", pageSize)
+                    .replaceQueryParam("after", ReportCursor.of(reports.get(reports.size() - 1)))
+                    .build().toUriString();
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                    .body(reports);
+        });
     }
 
-    @RequestMapping(value = "/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public Report getOneReport(@PathVariable("id") String id) {
-        Report report = reportRepository.findOne(id);
+    @RequestMapping(value = "/summary", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public DeferredResult<ResponseEntity<List<ReportSummary>>> getSummary(
+            @RequestParam(value = "groupBy", defaultValue = "week") String groupBy,
+            @RequestParam("year") int year,
+            WebRequest request) {
+
+        String accountId = accountResolver.currentAccountId();
+        ReportSummary.GroupBy grouping = ReportSummary.GroupBy.valueOf(groupBy.toUpperCase(Locale.ROOT));
+
+        String etag = EntityTags.of(request, reportVersions.etag(ReportWindow.ofYear(accountId, year)));
 
-        if (report == null) {
-            throw new ReportNotFoundException(id);
+        if (EntityTags.notModified(request, etag)) {
+            return null;
         }
 
-        return report;
+        return reportDispatcher.dispatch(ReportDispatcher.Lane.AGGREGATIONS, accountId + ":summary:" + year + ":" + grouping, etag,
+                () -> ResponseEntity.ok(reportRepository.summarize(accountId, year, grouping, workdayNorm)));
     }
 
-    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @RequestMapping(method = RequestMethod.GET, params = "stream=true", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public StreamingResponseBody streamReports() {
+        String accountId = accountResolver.currentAccountId();
+        ObjectWriter writer = objectMapper.writerFor(Report.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return out -> {
+            try (CloseableIterator<Report> reports = reportRepository.streamAll(accountId);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+
+                while (reports.hasNext()) {
+                    writer.writeValue(generator, reports.next());
+                }
+
+                generator.writeEndArray();
+            }
+        };
+    }
+
+    /**
+     * Pushes the reports of the account as they are written, so that watching the week
+     * doesn't take polling.
+     */
+    @RequestMapping(value = "/stream", method = RequestMethod.GET, produces = EVENT_STREAM_VALUE)
+    public SseEmitter streamNewReports() {
+        return reportBroadcaster.subscribe(accountResolver.currentAccountId());
+    }
+
+    /**
+     * Streams the reports arriving between {@code from} and {@code to}, both whole days in
+     * UTC and inclusive, as a CSV or xlsx attachment. Rows are written as they are read from
+     * the cursor, and a slow client blocks the cursor rather than buffering the history.
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportReports(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = "csv") String format) {
+
+        String accountId = accountResolver.currentAccountId();
+        ExportFormat exportFormat = ExportFormat.of(format);
+        Date start = from != null ? Date.from(from.atStartOfDay(ZoneOffset.UTC).toInstant()) : null;
+        Date end = to != null ? Date.from(to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()) : null;
+
+        log.info("Exporting reports from {} to {} as {}", from, to, exportFormat);
+
+        StreamingResponseBody body = out -> {
+            try (CloseableIterator<Report> reports = reportRepository.streamBetween(accountId, start, end)) {
+                exportFormat.getExporter().write(reports, out);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reports." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public DeferredResult<ResponseEntity<Report>> getOneReport(@PathVariable("id") String id, WebRequest request) {
+        String accountId = accountResolver.currentAccountId();
+
+        String etag = EntityTags.of(request, reportVersions.etag(accountId));
+
+        if (EntityTags.notModified(request, etag)) {
+            return null;
+        }
+
+        return reportDispatcher.dispatch(ReportDispatcher.Lane.READS, null, etag, () -> {
+            Report report = reportRepository.findByIdAndAccountId(id, accountId);
+
+            if (report == null) {
+                throw new ReportNotFoundException(id);
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+            if (report.getLastModified() != null) {
+                response.lastModified(report.getLastModified().getTime());
+            }
+
+            return response.body(report);
+        });
+    }
+
+    @RequestMapping(method = RequestMethod.POST, consumes = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
     public ResponseEntity<Void> insertReport(@RequestBody ClientReport clientReport) {
         log.info("Client posted report {}", clientReport.toString());
 
-        Report report = new Report();
-        report.setArrival(new Date(clientReport.getArrivalTime()));
-        report.setLeave(new Date(clientReport.getLeaveTime()));
-        report.setLunch(clientReport.getLunchTime());
-        report.setTotal(clientReport.getWorkTime());
+        if (!isValid(clientReport)) {
+            throw new IllegalArgumentException(INVALID_REPORT);
+        }
+
+        Report report = clientReport.toReport();
+        report.setAccountId(accountResolver.currentAccountId());
+        report.setLastModified(new Date());
+
+        if (ingestionQueue != null) {
+            return enqueueReport(report);
+        }
 
-        Report insertedReport = reportRepository.insert(report);
+        Report insertedReport = reportDispatcher.call(ReportDispatcher.Lane.WRITES, () -> reportRepository.insert(report));
 
         log.info("Inserted new report {}", insertedReport.toString());
+        eventPublisher.publishEvent(new ReportSavedEvent(null, insertedReport));
 
         URI location = ServletUriComponentsBuilder.fromCurrentRequest()
                 .path("/{id}").buildAndExpand(insertedReport.getId()).toUri();
@@ -79,18 +300,143 @@ public class TimeReportController {
         return ResponseEntity.created(location).build();
     }
 
-    @RequestMapping(value = "/{id}", method = RequestMethod.PUT, consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    /**
+     * Queues the report and acknowledges it before it is written. A punch the account already
+     * has is refused here, as the synchronous path does, while one that is still queued is
+     * only dropped by the writer, and its {@code Location} then answers {@code 404}.
+     */
+    private ResponseEntity<Void> enqueueReport(Report report) {
+        if (report.getPunchKey() != null && !reportDispatcher.call(ReportDispatcher.Lane.READS, () -> reportRepository
+                .findByAccountIdAndPunchKeyIn(report.getAccountId(), Collections.singleton(report.getPunchKey()))).isEmpty()) {
+            throw new DuplicateKeyException("Report " + report.getPunchKey() + " already exists");
+        }
+
+        report.setId(new ObjectId().toHexString());
+
+        if (!ingestionQueue.offer(report)) {
+            log.warn("Ingestion queue is full, rejecting report {}", report);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        log.info("Queued new report {}", report.toString());
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}").buildAndExpand(report.getId()).toUri();
+
+        return ResponseEntity.accepted().location(location).build();
+    }
+
+    @RequestMapping(value = "/batch", method = RequestMethod.POST,
+            consumes = {MediaType.APPLICATION_JSON_UTF8_VALUE, NDJSON_VALUE},
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public BatchResult insertReports(InputStream body) throws IOException {
+        String accountId = accountResolver.currentAccountId();
+        BatchResult result = new BatchResult();
+        List<Report> batch = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        int index = 0;
+
+        try (MappingIterator<ClientReport> clientReports = objectMapper.readerFor(ClientReport.class).readValues(body)) {
+            while (clientReports.hasNextValue()) {
+                ClientReport clientReport = clientReports.nextValue();
+
+                if (!isValid(clientReport)) {
+                    result.add(new BatchItemResult(index++, null, BatchItemResult.Status.REJECTED, INVALID_REPORT));
+                    continue;
+                }
+
+                Report report = clientReport.toReport();
+                report.setId(new ObjectId().toHexString());
+                report.setAccountId(accountId);
+                report.setLastModified(new Date());
+                batch.add(report);
+                positions.add(index++);
+
+                if (batch.size() == batchSize) {
+                    insertBatch(accountId, batch, positions, result);
+                    batch.clear();
+                    positions.clear();
+                }
+            }
+        }
+
+        insertBatch(accountId, batch, positions, result);
+        result.getItems().sort(Comparator.comparingInt(BatchItemResult::getIndex));
+
+        log.info("Inserted batch of reports {}", result);
+
+        return result;
+    }
+
+    @RequestMapping(value = "/import", method = RequestMethod.POST, consumes = "text/csv", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ImportResult importReports(InputStream body) throws IOException {
+        return csvReportImporter.importReports(body, accountResolver.currentAccountId());
+    }
+
+    private void insertBatch(String accountId, List<Report> batch, List<Integer> positions, BatchResult result) {
+        Set<Integer> duplicates = reportDispatcher.call(ReportDispatcher.Lane.WRITES, () -> reportRepository.insertUnordered(batch));
+        Map<String, String> existingIds = duplicates.isEmpty() ? Collections.emptyMap()
+                : reportRepository.findByAccountIdAndPunchKeyIn(accountId, duplicates.stream().map(i -> batch.get(i).getPunchKey()).collect(Collectors.toList()))
+                        .stream().collect(Collectors.toMap(Report::getPunchKey, Report::getId));
+        List<Report> created = new ArrayList<>(batch.size() - duplicates.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            Report report = batch.get(i);
+
+            if (duplicates.contains(i)) {
+                result.add(new BatchItemResult(positions.get(i), existingIds.get(report.getPunchKey()), BatchItemResult.Status.DUPLICATE, null));
+            } else {
+                result.add(new BatchItemResult(positions.get(i), report.getId(), BatchItemResult.Status.CREATED, null));
+                created.add(report);
+            }
+        }
+
+        if (!created.isEmpty()) {
+            eventPublisher.publishEvent(new ReportsInsertedEvent(created));
+        }
+    }
+
+    /**
+     * Replaces the report. When the body carries a {@code version} and the report has been
+     * changed since, nothing is written and the answer is {@code 409 Conflict}.
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.PUT, consumes = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
     public void updateReport(@PathVariable("id") String id, @RequestBody Report report) {
-        Report existingReport = reportRepository.findOne(id);
+        log.info("Updating report id {}", id);
+
+        changeReport(id, ReportPatch.of(report));
+    }
+
+    /**
+     * Changes only the fields present in the body, with the same version check as PUT.
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.PATCH, consumes = {MediaType.APPLICATION_JSON_UTF8_VALUE, SmileHttpMessageConverter.SMILE_VALUE})
+    public void patchReport(@PathVariable("id") String id, @RequestBody ReportPatch patch) {
+        log.info("Patching report id {} with {}", id, patch);
+
+        changeReport(id, patch);
+    }
+
+    private void changeReport(String id, ReportPatch changes) {
+        String accountId = accountResolver.currentAccountId();
+        changes.setLastModified(new Date());
+
+        Report existingReport = reportDispatcher.call(ReportDispatcher.Lane.WRITES, () -> reportRepository.update(accountId, id, changes));
 
         if (existingReport == null) {
-            throw new ReportNotFoundException(id);
+            // Only a failed update pays for finding out why
+            if (reportRepository.findByIdAndAccountId(id, accountId) == null) {
+                throw new ReportNotFoundException(id);
+            }
+
+            throw new ReportConflictException(id);
         }
 
-        log.info("Updating report id {}", id);
+        eventPublisher.publishEvent(new ReportSavedEvent(existingReport, changes.applyTo(existingReport)));
+    }
 
-        report.setId(id);
-        reportRepository.save(report);
+    private static boolean isValid(ClientReport clientReport) {
+        return clientReport.getArrivalTime() > 0 && clientReport.getLeaveTime() >= clientReport.getArrivalTime();
     }
 
     @ExceptionHandler(ReportNotFoundException.class)
@@ -98,4 +444,29 @@ public class TimeReportController {
     public String reportNotFound(ReportNotFoundException e) {
         return "Report " + e.getId() + " not found";
     }
+
+    @ExceptionHandler(ReportConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String reportConflict(ReportConflictException e) {
+        return "Report " + e.getId() + " has been changed";
+    }
+
+    @ExceptionHandler(DuplicateKeyException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String duplicateReport(DuplicateKeyException e) {
+        return "Report already exists";
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(LaneUnavailableException.class)
+    public ResponseEntity<String> laneUnavailable(LaneUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter()))
+                .body(e.getMessage());
+    }
 }
@@ -24,6 +24,9 @@ public class Account implements UserDetails {
 
     private String lastName;
 
+    @Indexed(unique = true, sparse = true)
+    private String apiTokenHash;
+
     public String getId() {
         return id;
     }
@@ -64,6 +67,17 @@ public class Account implements UserDetails {
         this.lastName = lastName;
     }
 
+    /**
+     * SHA-256 of the API token issued to the punch clocks of this account, hex encoded.
+     */
+    public String getApiTokenHash() {
+        return apiTokenHash;
+    }
+
+    public void setApiTokenHash(String apiTokenHash) {
+        this.apiTokenHash = apiTokenHash;
+    }
+
     public String getFullName() {
         return firstName + " " + lastName;
     }
@@ -0,0 +1,67 @@
+package net.svard.domain;
+
+public class BatchItemResult {
+    public enum Status {
+        CREATED, DUPLICATE, REJECTED
+    }
+
+    private int index;
+
+    private String id;
+
+    private Status status;
+
+    private String message;
+
+    public BatchItemResult() {
+    }
+
+    public BatchItemResult(int index, String id, Status status, String message) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", id='" + id + '\'' +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,45 @@
+package net.svard.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResult {
+    private List<BatchItemResult> items = new ArrayList<>();
+
+    public void add(BatchItemResult item) {
+        items.add(item);
+    }
+
+    public long getCreated() {
+        return count(BatchItemResult.Status.CREATED);
+    }
+
+    public long getDuplicates() {
+        return count(BatchItemResult.Status.DUPLICATE);
+    }
+
+    public long getRejected() {
+        return count(BatchItemResult.Status.REJECTED);
+    }
+
+    public List<BatchItemResult> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchItemResult> items) {
+        this.items = items;
+    }
+
+    private long count(BatchItemResult.Status status) {
+        return items.stream().filter(item -> item.getStatus() == status).count();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "created=" + getCreated() +
+                ", duplicates=" + getDuplicates() +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+}
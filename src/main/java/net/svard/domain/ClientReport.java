@@ -1,6 +1,10 @@
 package net.svard.domain;
 
+import java.util.Date;
+
 public class ClientReport {
+    private String clientId;
+
     private long workTime;
 
     private long lunchTime;
@@ -9,6 +13,14 @@ public class ClientReport {
 
     private long leaveTime;
 
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
     public long getWorkTime() {
         return workTime;
     }
@@ -41,10 +53,29 @@ public class ClientReport {
         this.leaveTime = leaveTime;
     }
 
+    /**
+     * Key that identifies a replayed punch, present only when the client supplied an id.
+     */
+    public String getPunchKey() {
+        return clientId != null ? clientId + "@" + arrivalTime : null;
+    }
+
+    public Report toReport() {
+        Report report = new Report();
+        report.setArrival(new Date(arrivalTime));
+        report.setLeave(new Date(leaveTime));
+        report.setLunch(lunchTime);
+        report.setTotal(workTime);
+        report.setPunchKey(getPunchKey());
+
+        return report;
+    }
+
     @Override
     public String toString() {
         return "ClientReport{" +
-                "workTime=" + workTime +
+                "clientId='" + clientId + '\'' +
+                ", workTime=" + workTime +
                 ", lunchTime=" + lunchTime +
                 ", arrivalTime=" + arrivalTime +
                 ", leaveTime=" + leaveTime +
@@ -0,0 +1,53 @@
+package net.svard.domain;
+
+import java.util.Date;
+
+public class FlexBalance {
+    private long balance;
+
+    private Date asOf;
+
+    private long norm;
+
+    public FlexBalance() {
+    }
+
+    public FlexBalance(long balance, Date asOf, long norm) {
+        this.balance = balance;
+        this.asOf = asOf;
+        this.norm = norm;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    public Date getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(Date asOf) {
+        this.asOf = asOf;
+    }
+
+    public long getNorm() {
+        return norm;
+    }
+
+    public void setNorm(long norm) {
+        this.norm = norm;
+    }
+
+    @Override
+    public String toString() {
+        return "FlexBalance{" +
+                "balance=" + balance +
+                ", asOf=" + asOf +
+                ", norm=" + norm +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package net.svard.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * The flexitime ledger of an account on one day with reports. {@code balance} is the
+ * cumulative time worked minus the norm for every day with reports, up to and including
+ * this day.
+ */
+@Document(collection = "flex_ledger")
+@CompoundIndex(name = "account_day", def = "{'accountId': 1, 'day': 1}")
+public class FlexCheckpoint {
+    @Id
+    private String id;
+
+    private String accountId;
+
+    private Date day;
+
+    private long worked;
+
+    private int reports;
+
+    private long balance;
+
+    public static String idOf(String accountId, Date day) {
+        return accountId + ":" + day.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /**
+     * Midnight UTC of the day the given time falls on.
+     */
+    public static Date dayOf(Date date) {
+        Instant day = date.toInstant().atZone(ZoneOffset.UTC).toLocalDate().atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        return Date.from(day);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public Date getDay() {
+        return day;
+    }
+
+    public void setDay(Date day) {
+        this.day = day;
+    }
+
+    public long getWorked() {
+        return worked;
+    }
+
+    public void setWorked(long worked) {
+        this.worked = worked;
+    }
+
+    public int getReports() {
+        return reports;
+    }
+
+    public void setReports(int reports) {
+        this.reports = reports;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    @Override
+    public String toString() {
+        return "FlexCheckpoint{" +
+                "id='" + id + '\'' +
+                ", accountId='" + accountId + '\'' +
+                ", day=" + day +
+                ", worked=" + worked +
+                ", reports=" + reports +
+                ", balance=" + balance +
+                '}';
+    }
+}
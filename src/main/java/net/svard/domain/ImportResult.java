@@ -0,0 +1,88 @@
+package net.svard.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportResult {
+    private long read;
+
+    private long imported;
+
+    private long duplicates;
+
+    private long rejected;
+
+    private List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    private String rejectedFile;
+
+    public long getRead() {
+        return read;
+    }
+
+    public void setRead(long read) {
+        this.read = read;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(long duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * The first rejected rows with their reason, at most {@code timeclock.import.max-rejected-rows}
+     * of the {@link #getRejected()} rejected in all.
+     */
+    public List<RejectedRow> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public void setRejectedRows(List<RejectedRow> rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    /**
+     * The path of the file with every rejected row on this server, which is only logged by
+     * the command line import and never sent to clients.
+     */
+    @JsonIgnore
+    public String getRejectedFile() {
+        return rejectedFile;
+    }
+
+    public void setRejectedFile(String rejectedFile) {
+        this.rejectedFile = rejectedFile;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "read=" + read +
+                ", imported=" + imported +
+                ", duplicates=" + duplicates +
+                ", rejected=" + rejected +
+                ", rejectedFile='" + rejectedFile + '\'' +
+                '}';
+    }
+}
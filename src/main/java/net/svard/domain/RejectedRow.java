@@ -0,0 +1,52 @@
+package net.svard.domain;
+
+import java.util.Map;
+
+public class RejectedRow {
+    private long row;
+
+    private String reason;
+
+    private Map<String, String> values;
+
+    public RejectedRow() {
+    }
+
+    public RejectedRow(long row, String reason, Map<String, String> values) {
+        this.row = row;
+        this.reason = reason;
+        this.values = values;
+    }
+
+    public long getRow() {
+        return row;
+    }
+
+    public void setRow(long row) {
+        this.row = row;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    public void setValues(Map<String, String> values) {
+        this.values = values;
+    }
+
+    @Override
+    public String toString() {
+        return "RejectedRow{" +
+                "row=" + row +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -1,17 +1,22 @@
 package net.svard.domain;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.util.Date;
 
 @Document(collection = "reports")
+@CompoundIndex(name = "account_arrival_id", def = "{'accountId': 1, 'arrival': 1, '_id': 1}")
 public class Report {
     @Id
     @Field("_id")
     private String id;
 
+    private String accountId;
+
     private long total;
 
     private long lunch;
@@ -20,6 +25,14 @@ public class Report {
 
     private Date leave;
 
+    private Date lastModified;
+
+    // Unique per account, see ReportIndexListener
+    private String punchKey;
+
+    @Version
+    private Long version;
+
     public String getId() {
         return id;
     }
@@ -28,6 +41,14 @@ public class Report {
         this.id = id;
     }
 
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
     public long getTotal() {
         return total;
     }
@@ -60,14 +81,42 @@ public class Report {
         this.leave = leave;
     }
 
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getPunchKey() {
+        return punchKey;
+    }
+
+    public void setPunchKey(String punchKey) {
+        this.punchKey = punchKey;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Report{" +
                 "id='" + id + '\'' +
+                ", accountId='" + accountId + '\'' +
                 ", total=" + total +
                 ", lunch=" + lunch +
                 ", arrival=" + arrival +
                 ", leave=" + leave +
+                ", lastModified=" + lastModified +
+                ", punchKey='" + punchKey + '\'' +
+                ", version=" + version +
                 '}';
     }
 
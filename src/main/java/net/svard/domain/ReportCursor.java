@@ -0,0 +1,76 @@
+package net.svard.domain;
+
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Position of a report in {@code (arrival, _id)} order, used as an opaque keyset
+ * pagination token of the form {@code <arrival millis>_<id>}.
+ */
+public class ReportCursor {
+    private final Date arrival;
+
+    private final String id;
+
+    public ReportCursor(Date arrival, String id) {
+        this.arrival = arrival;
+        this.id = id;
+    }
+
+    public static ReportCursor of(Report report) {
+        return new ReportCursor(report.getArrival(), report.getId());
+    }
+
+    public static ReportCursor parse(String token) {
+        int separator = token.indexOf('_');
+
+        if (separator <= 0 || separator == token.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor " + token);
+        }
+
+        String id = token.substring(separator + 1);
+
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Malformed cursor " + token);
+        }
+
+        try {
+            return new ReportCursor(new Date(Long.parseLong(token.substring(0, separator))), id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor " + token, e);
+        }
+    }
+
+    public Date getArrival() {
+        return arrival;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return arrival.getTime() + "_" + id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReportCursor that = (ReportCursor) o;
+
+        if (!arrival.equals(that.arrival)) return false;
+        return id.equals(that.id);
+
+    }
+
+    @Override
+    public int hashCode() {
+        int result = arrival.hashCode();
+        result = 31 * result + id.hashCode();
+        return result;
+    }
+}
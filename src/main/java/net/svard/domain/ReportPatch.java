@@ -0,0 +1,114 @@
+package net.svard.domain;
+
+import java.util.Date;
+
+/**
+ * Changes to a report. Fields left {@code null} are kept. {@code version}, when given, is
+ * the version of the report the changes were made to.
+ */
+public class ReportPatch {
+    private Date arrival;
+
+    private Date leave;
+
+    private Long lunch;
+
+    private Long total;
+
+    private Date lastModified;
+
+    private Long version;
+
+    /**
+     * Changes replacing every field of a report with those of {@code report}.
+     */
+    public static ReportPatch of(Report report) {
+        ReportPatch patch = new ReportPatch();
+        patch.setArrival(report.getArrival());
+        patch.setLeave(report.getLeave());
+        patch.setLunch(report.getLunch());
+        patch.setTotal(report.getTotal());
+        patch.setLastModified(report.getLastModified());
+        patch.setVersion(report.getVersion());
+
+        return patch;
+    }
+
+    /**
+     * A copy of {@code report} with the changes applied and its version incremented.
+     */
+    public Report applyTo(Report report) {
+        Report patched = new Report();
+        patched.setId(report.getId());
+        patched.setAccountId(report.getAccountId());
+        patched.setPunchKey(report.getPunchKey());
+        patched.setArrival(arrival != null ? arrival : report.getArrival());
+        patched.setLeave(leave != null ? leave : report.getLeave());
+        patched.setLunch(lunch != null ? lunch : report.getLunch());
+        patched.setTotal(total != null ? total : report.getTotal());
+        patched.setLastModified(lastModified != null ? lastModified : report.getLastModified());
+        patched.setVersion(report.getVersion() != null ? report.getVersion() + 1 : 1);
+
+        return patched;
+    }
+
+    public Date getArrival() {
+        return arrival;
+    }
+
+    public void setArrival(Date arrival) {
+        this.arrival = arrival;
+    }
+
+    public Date getLeave() {
+        return leave;
+    }
+
+    public void setLeave(Date leave) {
+        this.leave = leave;
+    }
+
+    public Long getLunch() {
+        return lunch;
+    }
+
+    public void setLunch(Long lunch) {
+        this.lunch = lunch;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportPatch{" +
+                "arrival=" + arrival +
+                ", leave=" + leave +
+                ", lunch=" + lunch +
+                ", total=" + total +
+                ", lastModified=" + lastModified +
+                ", version=" + version +
+                '}';
+    }
+}
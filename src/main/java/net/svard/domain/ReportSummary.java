@@ -0,0 +1,83 @@
+package net.svard.domain;
+
+/**
+ * Totals of the reports in one week or month. Weeks are numbered like MongoDB's {@code $week},
+ * months from 1. Overtime is the total minus the norm for every day with a report.
+ */
+public class ReportSummary {
+    public enum GroupBy {
+        WEEK, MONTH
+    }
+
+    private int year;
+
+    private int period;
+
+    private long total;
+
+    private long lunch;
+
+    private int days;
+
+    private long overtime;
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(int period) {
+        this.period = period;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getLunch() {
+        return lunch;
+    }
+
+    public void setLunch(long lunch) {
+        this.lunch = lunch;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public long getOvertime() {
+        return overtime;
+    }
+
+    public void setOvertime(long overtime) {
+        this.overtime = overtime;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportSummary{" +
+                "year=" + year +
+                ", period=" + period +
+                ", total=" + total +
+                ", lunch=" + lunch +
+                ", days=" + days +
+                ", overtime=" + overtime +
+                '}';
+    }
+}
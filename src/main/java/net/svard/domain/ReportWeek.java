@@ -0,0 +1,172 @@
+package net.svard.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The reports of an account in one week of a year, as defined by
+ * {@link net.svard.repositories.ReportPeriod}, embedded in one document together with
+ * their sums. The id orders the weeks of an account by year and week, so a year of weeks
+ * is a range scan on the {@code _id} index and no other index is needed.
+ *
+ * Reports are embedded as {@link Day}s rather than as {@link Report}s, which would carry
+ * the indexes of {@code reports} over to the buckets.
+ */
+@Document(collection = "report_weeks")
+public class ReportWeek {
+    @Id
+    private String id;
+
+    private String accountId;
+
+    private int year;
+
+    private int week;
+
+    private int reports;
+
+    private long total;
+
+    private long lunch;
+
+    private List<Day> days = new ArrayList<>();
+
+    public static String idOf(String accountId, int year, int week) {
+        return String.format("%s:%d:%02d", accountId, year, week);
+    }
+
+    /**
+     * Prefix of the ids of all weeks of the account in the year.
+     */
+    public static String yearPrefixOf(String accountId, int year) {
+        return accountId + ":" + year + ":";
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public int getWeek() {
+        return week;
+    }
+
+    public void setWeek(int week) {
+        this.week = week;
+    }
+
+    public int getReports() {
+        return reports;
+    }
+
+    public void setReports(int reports) {
+        this.reports = reports;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getLunch() {
+        return lunch;
+    }
+
+    public void setLunch(long lunch) {
+        this.lunch = lunch;
+    }
+
+    public List<Day> getDays() {
+        return days;
+    }
+
+    public void setDays(List<Day> days) {
+        this.days = days;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportWeek{" +
+                "id='" + id + '\'' +
+                ", accountId='" + accountId + '\'' +
+                ", year=" + year +
+                ", week=" + week +
+                ", reports=" + reports +
+                ", total=" + total +
+                ", lunch=" + lunch +
+                '}';
+    }
+
+    public static class Day {
+        private String id;
+
+        private long total;
+
+        private long lunch;
+
+        private Date arrival;
+
+        private Date leave;
+
+        private Date lastModified;
+
+        private String punchKey;
+
+        private Long version;
+
+        public static Day of(Report report) {
+            Day day = new Day();
+            day.id = report.getId();
+            day.total = report.getTotal();
+            day.lunch = report.getLunch();
+            day.arrival = report.getArrival();
+            day.leave = report.getLeave();
+            day.lastModified = report.getLastModified();
+            day.punchKey = report.getPunchKey();
+            day.version = report.getVersion();
+
+            return day;
+        }
+
+        public Report toReport(String accountId) {
+            Report report = new Report();
+            report.setId(id);
+            report.setAccountId(accountId);
+            report.setTotal(total);
+            report.setLunch(lunch);
+            report.setArrival(arrival);
+            report.setLeave(leave);
+            report.setLastModified(lastModified);
+            report.setPunchKey(punchKey);
+            report.setVersion(version);
+
+            return report;
+        }
+    }
+}
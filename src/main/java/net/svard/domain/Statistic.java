@@ -3,11 +3,18 @@ package net.svard.domain;
 import org.springframework.data.annotation.Id;
 
 import java.util.Date;
+import java.util.Objects;
 
 public class Statistic {
+    public enum Granularity {
+        YEAR, MONTH, WEEK
+    }
+
     @Id
     private int id;
 
+    private Integer period;
+
     private long sum;
 
     private long avg;
@@ -55,6 +62,17 @@ public class Statistic {
         this.id = id;
     }
 
+    /**
+     * The month or week of the year {@code id}, or {@code null} for a whole year.
+     */
+    public Integer getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Integer period) {
+        this.period = period;
+    }
+
     public long getSum() {
         return sum;
     }
@@ -95,10 +113,21 @@ public class Statistic {
         return new Record(shortestDate, shortestTime);
     }
 
+    public boolean sameAs(Statistic other) {
+        return other != null
+                && id == other.id
+                && Objects.equals(period, other.period)
+                && sum == other.sum
+                && avg == other.avg
+                && shortestTime == other.shortestTime
+                && longestTime == other.longestTime;
+    }
+
     @Override
     public String toString() {
         return "Statistic{" +
                 "id=" + id +
+                ", period=" + period +
                 ", sum=" + sum +
                 ", avg=" + avg +
                 ", shortest=" + getShortest() +
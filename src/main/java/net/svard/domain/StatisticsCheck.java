@@ -0,0 +1,35 @@
+package net.svard.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatisticsCheck {
+    private List<Integer> mismatchedYears;
+
+    public StatisticsCheck() {
+        this(new ArrayList<>());
+    }
+
+    public StatisticsCheck(List<Integer> mismatchedYears) {
+        this.mismatchedYears = mismatchedYears;
+    }
+
+    public boolean isConsistent() {
+        return mismatchedYears.isEmpty();
+    }
+
+    public List<Integer> getMismatchedYears() {
+        return mismatchedYears;
+    }
+
+    public void setMismatchedYears(List<Integer> mismatchedYears) {
+        this.mismatchedYears = mismatchedYears;
+    }
+
+    @Override
+    public String toString() {
+        return "StatisticsCheck{" +
+                "mismatchedYears=" + mismatchedYears +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package net.svard.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "yearly_stats")
+@CompoundIndex(name = "account_year", def = "{'accountId': 1, 'year': 1}")
+public class YearlyStatistic {
+    @Id
+    private String id;
+
+    private String accountId;
+
+    private int year;
+
+    private long sum;
+
+    private long count;
+
+    private long shortestTime;
+
+    private Date shortestDate;
+
+    private long longestTime;
+
+    private Date longestDate;
+
+    public static String idOf(String accountId, int year) {
+        return accountId + ":" + year;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getShortestTime() {
+        return shortestTime;
+    }
+
+    public void setShortestTime(long shortestTime) {
+        this.shortestTime = shortestTime;
+    }
+
+    public Date getShortestDate() {
+        return shortestDate;
+    }
+
+    public void setShortestDate(Date shortestDate) {
+        this.shortestDate = shortestDate;
+    }
+
+    public long getLongestTime() {
+        return longestTime;
+    }
+
+    public void setLongestTime(long longestTime) {
+        this.longestTime = longestTime;
+    }
+
+    public Date getLongestDate() {
+        return longestDate;
+    }
+
+    public void setLongestDate(Date longestDate) {
+        this.longestDate = longestDate;
+    }
+
+    public Statistic toStatistic() {
+        Statistic statistic = new Statistic();
+        statistic.setId(year);
+        statistic.setSum(sum);
+        statistic.setAvg(count > 0 ? sum / count : 0);
+        statistic.setShortestTime(shortestTime);
+        statistic.setShortestDate(shortestDate);
+        statistic.setLongestTime(longestTime);
+        statistic.setLongestDate(longestDate);
+
+        return statistic;
+    }
+
+    @Override
+    public String toString() {
+        return "YearlyStatistic{" +
+                "id='" + id + '\'' +
+                ", accountId='" + accountId + '\'' +
+                ", year=" + year +
+                ", sum=" + sum +
+                ", count=" + count +
+                ", shortestTime=" + shortestTime +
+                ", shortestDate=" + shortestDate +
+                ", longestTime=" + longestTime +
+                ", longestDate=" + longestDate +
+                '}';
+    }
+}
@@ -0,0 +1,85 @@
+package net.svard.events;
+
+import net.svard.cache.ReportWindow;
+
+/**
+ * Published when reports were written by another instance, so that state derived from them
+ * in this one can be dropped. A {@code WEEK} or {@code YEAR} invalidation names the window
+ * holding the written report, a {@code STATISTIC} invalidation the yearly statistic of the
+ * account, and an {@code ALL} invalidation everything of the account, or of every account
+ * when the account isn't known.
+ */
+public class ReportInvalidationEvent {
+
+    public enum Type {
+        WEEK, YEAR, STATISTIC, ALL
+    }
+
+    private final Type type;
+
+    private final String accountId;
+
+    private final ReportWindow window;
+
+    private final int year;
+
+    private ReportInvalidationEvent(Type type, String accountId, ReportWindow window, int year) {
+        this.type = type;
+        this.accountId = accountId;
+        this.window = window;
+        this.year = year;
+    }
+
+    public static ReportInvalidationEvent ofWeek(String accountId, int year, int week) {
+        return new ReportInvalidationEvent(Type.WEEK, accountId, ReportWindow.ofYearAndWeek(accountId, year, week), year);
+    }
+
+    public static ReportInvalidationEvent ofYear(String accountId, int year) {
+        return new ReportInvalidationEvent(Type.YEAR, accountId, ReportWindow.ofYear(accountId, year), year);
+    }
+
+    public static ReportInvalidationEvent ofStatistic(String accountId, int year) {
+        return new ReportInvalidationEvent(Type.STATISTIC, accountId, null, year);
+    }
+
+    public static ReportInvalidationEvent ofAccount(String accountId) {
+        return new ReportInvalidationEvent(Type.ALL, accountId, null, 0);
+    }
+
+    public static ReportInvalidationEvent ofAll() {
+        return new ReportInvalidationEvent(Type.ALL, null, null, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The account of the invalidated state, {@code null} for an {@code ALL} invalidation of
+     * every account.
+     */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * The invalidated window of a {@code WEEK} or {@code YEAR} invalidation.
+     */
+    public ReportWindow getWindow() {
+        return window;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportInvalidationEvent{" +
+                "type=" + type +
+                ", accountId='" + accountId + '\'' +
+                (window != null ? ", window=" + window : "") +
+                (type == Type.STATISTIC ? ", year=" + year : "") +
+                '}';
+    }
+}
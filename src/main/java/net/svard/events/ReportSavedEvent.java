@@ -0,0 +1,38 @@
+package net.svard.events;
+
+import net.svard.domain.Report;
+
+/**
+ * Published after a report has been written. {@code previous} holds the stored version
+ * that was replaced, or {@code null} when the report was inserted.
+ */
+public class ReportSavedEvent {
+    private final Report previous;
+
+    private final Report report;
+
+    public ReportSavedEvent(Report previous, Report report) {
+        this.previous = previous;
+        this.report = report;
+    }
+
+    public Report getPrevious() {
+        return previous;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public boolean isInsert() {
+        return previous == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportSavedEvent{" +
+                "previous=" + previous +
+                ", report=" + report +
+                '}';
+    }
+}
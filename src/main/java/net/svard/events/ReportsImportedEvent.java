@@ -0,0 +1,33 @@
+package net.svard.events;
+
+/**
+ * Published after reports have been bulk imported for an account. The import doesn't
+ * publish a {@link ReportSavedEvent} per report, so anything derived from the reports has
+ * to be refreshed as a whole.
+ */
+public class ReportsImportedEvent {
+    private final String accountId;
+
+    private final long imported;
+
+    public ReportsImportedEvent(String accountId, long imported) {
+        this.accountId = accountId;
+        this.imported = imported;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportsImportedEvent{" +
+                "accountId='" + accountId + '\'' +
+                ", imported=" + imported +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package net.svard.events;
+
+import net.svard.domain.Report;
+
+import java.util.List;
+
+/**
+ * Published once after a batch of reports has been inserted, in place of a
+ * {@link ReportSavedEvent} per report, so that state derived from the reports is updated
+ * with a write per affected document rather than a write per report.
+ */
+public class ReportsInsertedEvent {
+    private final List<Report> reports;
+
+    public ReportsInsertedEvent(List<Report> reports) {
+        this.reports = reports;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportsInsertedEvent{" +
+                "reports=" + reports.size() +
+                '}';
+    }
+}
@@ -0,0 +1,28 @@
+package net.svard.exceptions;
+
+/**
+ * Thrown when a request lane refuses work, because its circuit breaker is open or all of its
+ * slots are taken, and there is no earlier result to answer with instead.
+ */
+public class LaneUnavailableException extends RuntimeException {
+    private String lane;
+
+    private long retryAfter;
+
+    public LaneUnavailableException(String lane, long retryAfter) {
+        super("The " + lane + " lane is unavailable, retry after " + retryAfter + " s");
+        this.lane = lane;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    /**
+     * Seconds until the lane is expected to take work again.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
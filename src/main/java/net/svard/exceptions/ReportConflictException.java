@@ -0,0 +1,13 @@
+package net.svard.exceptions;
+
+public class ReportConflictException extends RuntimeException {
+    private String id;
+
+    public ReportConflictException(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
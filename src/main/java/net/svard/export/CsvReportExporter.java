@@ -0,0 +1,41 @@
+package net.svard.export;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import net.svard.domain.Report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * One row per report with the times as ISO-8601 instants in UTC and the durations in
+ * seconds.
+ */
+class CsvReportExporter implements ReportExporter {
+
+    private final CsvMapper mapper = new CsvMapper();
+
+    private final CsvSchema schema = CsvSchema.builder()
+            .addColumns(Arrays.asList(COLUMNS), CsvSchema.ColumnType.STRING)
+            .setUseHeader(true)
+            .build();
+
+    @Override
+    public void write(Iterator<Report> reports, OutputStream out) throws IOException {
+        try (SequenceWriter rows = mapper.writer(schema).writeValues(out)) {
+            while (reports.hasNext()) {
+                Report report = reports.next();
+                rows.write(new Object[]{report.getId(), instant(report.getArrival()), instant(report.getLeave()),
+                        report.getLunch(), report.getTotal()});
+            }
+        }
+    }
+
+    private static String instant(Date date) {
+        return date != null ? date.toInstant().toString() : "";
+    }
+}
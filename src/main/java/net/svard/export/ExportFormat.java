@@ -0,0 +1,42 @@
+package net.svard.export;
+
+import java.util.Locale;
+
+public enum ExportFormat {
+    CSV("text/csv", "csv", new CsvReportExporter()),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx", new XlsxReportExporter());
+
+    private final String mediaType;
+
+    private final String extension;
+
+    private final ReportExporter exporter;
+
+    ExportFormat(String mediaType, String extension, ReportExporter exporter) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+        this.exporter = exporter;
+    }
+
+    public static ExportFormat of(String format) {
+        for (ExportFormat exportFormat : values()) {
+            if (exportFormat.extension.equals(format.toLowerCase(Locale.ROOT))) {
+                return exportFormat;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown export format " + format);
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public ReportExporter getExporter() {
+        return exporter;
+    }
+}
@@ -0,0 +1,17 @@
+package net.svard.export;
+
+import net.svard.domain.Report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Writes reports as they are read from the cursor, so that an export holds no more than a
+ * bounded number of rows in memory however long the history is.
+ */
+public interface ReportExporter {
+    String[] COLUMNS = {"id", "arrival", "leave", "lunch", "total"};
+
+    void write(Iterator<Report> reports, OutputStream out) throws IOException;
+}
@@ -0,0 +1,69 @@
+package net.svard.export;
+
+import net.svard.domain.Report;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the workbook with a sliding window of rows. Rows that leave the window are flushed
+ * to a compressed temporary file, which is copied into the response once the cursor is
+ * exhausted and then deleted.
+ */
+class XlsxReportExporter implements ReportExporter {
+
+    private static final int WINDOW = 100;
+
+    // Excel counts days from 1899-12-30, and its dates have no time zone, so they are written in UTC
+    private static final double EPOCH_IN_EXCEL = 25569;
+
+    @Override
+    public void write(Iterator<Report> reports, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(WINDOW);
+        workbook.setCompressTempFiles(true);
+
+        try {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+
+            Sheet sheet = workbook.createSheet("Reports");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                header.createCell(i).setCellValue(COLUMNS[i]);
+            }
+
+            int index = 1;
+            while (reports.hasNext()) {
+                Report report = reports.next();
+                Row row = sheet.createRow(index++);
+                row.createCell(0).setCellValue(report.getId());
+                dateCell(row, 1, report.getArrival(), dateStyle);
+                dateCell(row, 2, report.getLeave(), dateStyle);
+                row.createCell(3).setCellValue(report.getLunch());
+                row.createCell(4).setCellValue(report.getTotal());
+            }
+
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private static void dateCell(Row row, int column, Date date, CellStyle style) {
+        if (date == null) {
+            return;
+        }
+
+        Cell cell = row.createCell(column);
+        cell.setCellValue(EPOCH_IN_EXCEL + (double) date.getTime() / TimeUnit.DAYS.toMillis(1));
+        cell.setCellStyle(style);
+    }
+}
@@ -0,0 +1,250 @@
+package net.svard.feed;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes every written report to the open feeds of its account.
+ *
+ * Publishing a report only appends it to a bounded buffer per subscriber, so a write never
+ * waits for a client. A small pool of sender threads drains the buffers. A subscriber that
+ * reads slower than reports are written loses its oldest buffered reports, counted in
+ * {@code counter.feed.dropped}, instead of holding memory. A sender waits at most
+ * {@code timeclock.feed.send-timeout-ms} for a client to take a report; a client that doesn't
+ * has its feed closed, counted in {@code counter.feed.evicted}, and the sender moves on while
+ * the stalled write unwinds on a writer thread of its own.
+ */
+@Slf4j
+@Component
+public class ReportBroadcaster {
+
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final ExecutorService senders;
+
+    private final ExecutorService writers;
+
+    private final Counter dropped;
+
+    private final Counter evicted;
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final long sendTimeout;
+
+    @Autowired
+    public ReportBroadcaster(MetricRegistry metricRegistry,
+                             @Value("${timeclock.feed.buffer-size:100}") int bufferSize,
+                             @Value("${timeclock.feed.timeout-ms:1800000}") long timeout,
+                             @Value("${timeclock.feed.senders:2}") int senders,
+                             @Value("${timeclock.feed.send-timeout-ms:5000}") long sendTimeout) {
+        this.senders = Executors.newFixedThreadPool(senders, daemons("feed-sender-"));
+        // Each send runs on a writer, so that a stalled client holds a writer rather than a
+        // sender. Writers are reused and only pile up while evicted writes are still unwinding.
+        this.writers = Executors.newCachedThreadPool(daemons("feed-writer-"));
+        this.dropped = metricRegistry.counter("counter.feed.dropped");
+        this.evicted = metricRegistry.counter("counter.feed.evicted");
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.sendTimeout = sendTimeout;
+
+        metricRegistry.register("gauge.feed.subscribers", (Gauge<Integer>) () ->
+                subscribers.values().stream().mapToInt(Set::size).sum());
+    }
+
+    /**
+     * Opens a feed of the reports of the account as server-sent {@code report} events.
+     */
+    public SseEmitter subscribe(String accountId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = subscribe(accountId, report -> emitter.send(SseEmitter.event()
+                .id(report.getId())
+                .name("report")
+                .data(report, MediaType.APPLICATION_JSON)), emitter::complete);
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+
+        return emitter;
+    }
+
+    Subscriber subscribe(String accountId, ReportSink sink, Runnable close) {
+        Subscriber subscriber = new Subscriber(accountId, sink, close);
+        subscribers.compute(accountId, (id, existing) -> {
+            Set<Subscriber> watchers = existing != null ? existing : new CopyOnWriteArraySet<>();
+            watchers.add(subscriber);
+            return watchers;
+        });
+
+        return subscriber;
+    }
+
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        publish(event.getReport());
+    }
+
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        event.getReports().forEach(this::publish);
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private static ThreadFactory daemons(String prefix) {
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void publish(Report report) {
+        Set<Subscriber> watchers = subscribers.get(report.getAccountId());
+
+        if (watchers != null) {
+            watchers.forEach(subscriber -> subscriber.offer(report));
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.accountId, (id, watchers) -> {
+            watchers.remove(subscriber);
+            return watchers.isEmpty() ? null : watchers;
+        });
+    }
+
+    interface ReportSink {
+        void send(Report report) throws IOException;
+    }
+
+    class Subscriber {
+        private final String accountId;
+
+        private final ReportSink sink;
+
+        private final Runnable close;
+
+        private final Deque<Report> buffer = new ArrayDeque<>();
+
+        private boolean sending;
+
+        Subscriber(String accountId, ReportSink sink, Runnable close) {
+            this.accountId = accountId;
+            this.sink = sink;
+            this.close = close;
+        }
+
+        void offer(Report report) {
+            synchronized (buffer) {
+                if (buffer.size() == bufferSize) {
+                    buffer.poll();
+                    dropped.inc();
+                }
+
+                buffer.add(report);
+
+                if (sending) {
+                    return;
+                }
+
+                sending = true;
+            }
+
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                unsubscribe(this);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Report report;
+
+                synchronized (buffer) {
+                    report = buffer.poll();
+
+                    if (report == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+
+                if (!send(report)) {
+                    unsubscribe(this);
+                    return;
+                }
+            }
+        }
+
+        private boolean send(Report report) {
+            Future<?> write;
+
+            try {
+                write = writers.submit(() -> {
+                    sink.send(report);
+                    return null;
+                });
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+
+            try {
+                write.get(sendTimeout, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (ExecutionException e) {
+                // The client has gone away or the emitter has completed
+                log.debug("Closing report feed of {}", accountId, e.getCause());
+                return false;
+            } catch (TimeoutException e) {
+                log.info("Closing report feed of {} after a send took over {} ms", accountId, sendTimeout);
+                evicted.inc();
+                write.cancel(true);
+                // Closing waits for the stalled write to give up, so it isn't done on a sender
+                writers.execute(close);
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write.cancel(true);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.svard.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Account;
+import net.svard.domain.ImportResult;
+import net.svard.repositories.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Imports a CSV file from the command line and exits, for migrations too large to post:
+ *
+ * <pre>
+ * java -jar timeclock.jar --spring.main.web-environment=false \
+ *     --timeclock.import.file=legacy.csv --timeclock.import.account=kristofer
+ * </pre>
+ *
+ * The account is a username, and falls back to the value itself when there is no such
+ * account. The exit status is 1 when any row was rejected.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("timeclock.import.file")
+public class CsvImportRunner implements ApplicationRunner {
+
+    private final CsvReportImporter csvReportImporter;
+
+    private final AccountRepository accountRepository;
+
+    private final ApplicationContext context;
+
+    private final String file;
+
+    private final String account;
+
+    @Autowired
+    public CsvImportRunner(CsvReportImporter csvReportImporter, AccountRepository accountRepository, ApplicationContext context,
+                           @Value("${timeclock.import.file}") String file,
+                           @Value("${timeclock.import.account}") String account) {
+        this.csvReportImporter = csvReportImporter;
+        this.accountRepository = accountRepository;
+        this.context = context;
+        this.file = file;
+        this.account = account;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Account owner = accountRepository.findOneByUsername(account);
+        String accountId = owner != null ? owner.getId() : account;
+
+        log.info("Importing {} for {}", file, accountId);
+
+        ImportResult result;
+        try (InputStream csv = Files.newInputStream(Paths.get(file))) {
+            result = csvReportImporter.importReports(csv, accountId, true);
+        }
+
+        if (result.getRejectedFile() != null) {
+            log.warn("{} rows were rejected, see {}", result.getRejected(), result.getRejectedFile());
+        }
+
+        System.exit(SpringApplication.exit(context, () -> result.getRejected() > 0 ? 1 : 0));
+    }
+}
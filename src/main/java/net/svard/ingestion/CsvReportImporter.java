@@ -0,0 +1,312 @@
+package net.svard.ingestion;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.ImportResult;
+import net.svard.domain.RejectedRow;
+import net.svard.domain.Report;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.repositories.ReportRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports reports from CSV with the columns {@code arrival}, {@code leave}, {@code lunch}
+ * and optionally {@code total}, in the layout written by the export. Times are ISO-8601
+ * instants or epoch milliseconds, durations are seconds, and a missing total is the time
+ * between arrival and leave less lunch.
+ *
+ * The file is parsed as a stream and converted a batch at a time in parallel. A batch is
+ * written in one unordered bulk insert while the next one is parsed, so at most two batches
+ * are held in memory. Rows whose arrival the account already has a report for are skipped.
+ * The first rows that can't be converted are returned in the result next to their reason, and
+ * the command line import also writes all of them to a rejected-row file.
+ */
+@Slf4j
+@Component
+public class CsvReportImporter {
+
+    private static final int PROGRESS_INTERVAL = 100000;
+
+    private final ReportRepository reportRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MetricRegistry metricRegistry;
+
+    private final Path rejectedDirectory;
+
+    private final int batchSize;
+
+    private final int maxRejectedRows;
+
+    private final CsvMapper mapper = new CsvMapper();
+
+    @Autowired
+    public CsvReportImporter(ReportRepository reportRepository, ApplicationEventPublisher eventPublisher,
+                             MetricRegistry metricRegistry,
+                             @Value("${timeclock.import.rejected-dir:${java.io.tmpdir}}") String rejectedDirectory,
+                             @Value("${timeclock.import.batch-size:5000}") int batchSize,
+                             @Value("${timeclock.import.max-rejected-rows:100}") int maxRejectedRows) {
+        this.reportRepository = reportRepository;
+        this.eventPublisher = eventPublisher;
+        this.metricRegistry = metricRegistry;
+        this.rejectedDirectory = Paths.get(rejectedDirectory);
+        this.batchSize = batchSize;
+        this.maxRejectedRows = maxRejectedRows;
+
+        mapper.enable(CsvParser.Feature.TRIM_SPACES);
+    }
+
+    /**
+     * Imports without a rejected-row file, for clients that can't reach the server's files.
+     */
+    public ImportResult importReports(InputStream csv, String accountId) throws IOException {
+        return importReports(csv, accountId, false);
+    }
+
+    /**
+     * Imports and, with {@code writeRejectedFile}, writes every rejected row to a file in
+     * {@code timeclock.import.rejected-dir}.
+     */
+    public ImportResult importReports(InputStream csv, String accountId, boolean writeRejectedFile) throws IOException {
+        ImportResult result = new ImportResult();
+        ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "import-writer"));
+        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+
+        try (RejectedRows rejected = new RejectedRows(writeRejectedFile ? rejectedDirectory : null, mapper);
+             MappingIterator<Map<String, String>> rows = mapper.readerFor(Map.class).with(schema).readValues(csv)) {
+            List<Row> batch = new ArrayList<>(batchSize);
+            Future<Written> written = null;
+            long number = 0;
+
+            while (true) {
+                Row row;
+
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+
+                    Map<String, String> values = rows.nextValue();
+                    number++;
+
+                    if (values.values().stream().allMatch(String::isEmpty)) {
+                        continue;
+                    }
+
+                    row = new Row(number, values);
+                } catch (JsonProcessingException e) {
+                    // The parser continues with the next line
+                    row = new Row(++number, Collections.emptyMap());
+                    row.error = e.getOriginalMessage();
+                }
+
+                batch.add(row);
+
+                if (batch.size() == batchSize) {
+                    written = importBatch(batch, accountId, written, writer, rejected, result);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            written = importBatch(batch, accountId, written, writer, rejected, result);
+            await(written, result);
+
+            result.setRejectedFile(rejected.getFile());
+        } finally {
+            writer.shutdownNow();
+        }
+
+        log.info("Imported reports for {} {}", accountId, result);
+
+        if (result.getImported() > 0) {
+            eventPublisher.publishEvent(new ReportsImportedEvent(accountId, result.getImported()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Converts and deduplicates a batch, waits for the previous batch to be written and
+     * hands this one to the writer.
+     */
+    private Future<Written> importBatch(List<Row> batch, String accountId, Future<Written> previous,
+                                       ExecutorService writer, RejectedRows rejected, ImportResult result) {
+        batch.parallelStream()
+                .filter(row -> row.error == null)
+                .forEach(row -> row.convert(accountId));
+
+        List<Report> reports = new ArrayList<>(batch.size());
+        Set<Date> arrivals = new HashSet<>();
+        long duplicates = 0;
+        long rejects = 0;
+
+        for (Row row : batch) {
+            if (row.error != null) {
+                rejected.write(row.number, row.error, row.values);
+                rejects++;
+
+                if (result.getRejectedRows().size() < maxRejectedRows) {
+                    result.getRejectedRows().add(new RejectedRow(row.number, row.error, row.values));
+                }
+            } else if (!arrivals.add(row.report.getArrival())) {
+                duplicates++;
+            } else {
+                reports.add(row.report);
+            }
+        }
+
+        // Rows repeating an arrival of the previous batch can't be found in the database
+        // until it has been written
+        Set<Date> previousArrivals = await(previous, result);
+        Set<Date> existing = reportRepository.findArrivals(accountId, arrivals);
+        int unique = reports.size();
+        reports.removeIf(report -> existing.contains(report.getArrival()) || previousArrivals.contains(report.getArrival()));
+        duplicates += unique - reports.size();
+
+        result.setRead(result.getRead() + batch.size());
+        result.setRejected(result.getRejected() + rejects);
+        result.setDuplicates(result.getDuplicates() + duplicates);
+        metricRegistry.counter("counter.import.rows.read").inc(batch.size());
+        metricRegistry.counter("counter.import.rows.duplicates").inc(duplicates);
+        metricRegistry.counter("counter.import.rows.rejected").inc(rejects);
+
+        if (result.getRead() / PROGRESS_INTERVAL != (result.getRead() - batch.size()) / PROGRESS_INTERVAL) {
+            log.info("Import for {} has read {} rows", accountId, result.getRead());
+        }
+
+        return writer.submit(() -> {
+            Set<Integer> skipped = reportRepository.insertUnordered(reports);
+            metricRegistry.counter("counter.import.rows.imported").inc(reports.size() - skipped.size());
+
+            return new Written(arrivals, reports.size() - skipped.size(), skipped.size());
+        });
+    }
+
+    /**
+     * Waits for a batch to be written, adds it to the result and returns its arrivals.
+     */
+    private static Set<Date> await(Future<Written> written, ImportResult result) {
+        if (written == null) {
+            return Collections.emptySet();
+        }
+
+        try {
+            Written batch = written.get();
+            result.setImported(result.getImported() + batch.imported);
+            result.setDuplicates(result.getDuplicates() + batch.skipped);
+
+            return batch.arrivals;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing reports", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException("Could not write imported reports", e.getCause());
+        }
+    }
+
+    private static class Written {
+        private final Set<Date> arrivals;
+
+        private final long imported;
+
+        private final int skipped;
+
+        Written(Set<Date> arrivals, long imported, int skipped) {
+            this.arrivals = arrivals;
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+    }
+
+    private static class Row {
+        private final long number;
+
+        private final Map<String, String> values;
+
+        private Report report;
+
+        private String error;
+
+        Row(long number, Map<String, String> values) {
+            this.number = number;
+            this.values = values;
+        }
+
+        void convert(String accountId) {
+            try {
+                Date arrival = time(values.get("arrival"), "arrival");
+                Date leave = time(values.get("leave"), "leave");
+
+                if (leave.before(arrival)) {
+                    throw new IllegalArgumentException("Leave must not precede arrival");
+                }
+
+                String lunchValue = values.get("lunch");
+                long lunch = lunchValue == null || lunchValue.isEmpty() ? 0 : Long.parseLong(lunchValue);
+                String totalValue = values.get("total");
+                long total = totalValue == null || totalValue.isEmpty()
+                        ? (leave.getTime() - arrival.getTime()) / 1000 - lunch
+                        : Long.parseLong(totalValue);
+
+                report = new Report();
+                report.setId(new ObjectId().toHexString());
+                report.setAccountId(accountId);
+                report.setArrival(arrival);
+                report.setLeave(leave);
+                report.setLunch(lunch);
+                report.setTotal(total);
+                report.setLastModified(new Date());
+            } catch (NumberFormatException e) {
+                error = "Malformed duration " + e.getMessage();
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+        }
+
+        private static Date time(String value, String column) {
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Missing " + column);
+            }
+
+            try {
+                return value.chars().allMatch(Character::isDigit)
+                        ? new Date(Long.parseLong(value))
+                        : Date.from(Instant.parse(value));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Malformed " + column + " " + value);
+            }
+        }
+    }
+}
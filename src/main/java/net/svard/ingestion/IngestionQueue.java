@@ -0,0 +1,325 @@
+package net.svard.ingestion;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.BulkWriteError;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.repositories.ReportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind ingestion of punches, enabled with {@code timeclock.ingestion.mode=write-behind}.
+ *
+ * Accepted reports already carry their id. They are appended to the {@link ReportJournal}
+ * and put on a bounded queue, and a single writer thread inserts them into Mongo in unordered
+ * batches. The journal is truncated whenever the queue has been drained, and replayed on
+ * startup. Replaying is idempotent because a report that was already written is rejected
+ * as a duplicate id. Queue depth, lag and journal size are published on {@code /metrics}.
+ *
+ * Writes that fail because Mongo is unreachable or slow are retried until they succeed. A
+ * report that fails for any other reason, such as one that can't be mapped, would fail
+ * forever, so it is appended to the dead-letter file {@code timeclock.ingestion.dead-letter}
+ * and the writer moves on.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "timeclock.ingestion.mode", havingValue = "write-behind")
+public class IngestionQueue implements SmartLifecycle {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ReportRepository reportRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MetricRegistry metricRegistry;
+
+    private final ReportJournal journal;
+
+    private final ReportJournal deadLetters;
+
+    private final BlockingQueue<Report> queue;
+
+    private final int batchSize;
+
+    private final long retryMillis;
+
+    // Guards the journal and the queue so that the journal is never truncated while it
+    // holds an entry that has not been written
+    private final Object lock = new Object();
+
+    private volatile long inFlightSince;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @Autowired
+    public IngestionQueue(ReportRepository reportRepository, ApplicationEventPublisher eventPublisher,
+                          ObjectMapper objectMapper, MetricRegistry metricRegistry,
+                          @Value("${timeclock.ingestion.journal:timeclock-ingestion.journal}") String journalPath,
+                          @Value("${timeclock.ingestion.dead-letter:timeclock-ingestion.dead-letter}") String deadLetterPath,
+                          @Value("${timeclock.ingestion.capacity:10000}") int capacity,
+                          @Value("${timeclock.ingestion.batch-size:500}") int batchSize,
+                          @Value("${timeclock.ingestion.retry-ms:1000}") long retryMillis) {
+        this.reportRepository = reportRepository;
+        this.eventPublisher = eventPublisher;
+        this.metricRegistry = metricRegistry;
+        this.journal = new ReportJournal(Paths.get(journalPath), objectMapper);
+        this.deadLetters = new ReportJournal(Paths.get(deadLetterPath), objectMapper);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.retryMillis = retryMillis;
+
+        metricRegistry.register("gauge.ingestion.queue.depth", (Gauge<Integer>) queue::size);
+        metricRegistry.register("gauge.ingestion.lag", (Gauge<Long>) this::lag);
+        metricRegistry.register("gauge.ingestion.journal.bytes", (Gauge<Long>) journal::size);
+    }
+
+    /**
+     * Journals and enqueues a report that has been assigned an id. Returns {@code false}
+     * without journaling it when the queue is full.
+     */
+    public boolean offer(Report report) {
+        synchronized (lock) {
+            if (queue.remainingCapacity() == 0) {
+                metricRegistry.counter("counter.ingestion.rejected").inc();
+                return false;
+            }
+
+            journal.append(report);
+            queue.add(report);
+        }
+
+        return true;
+    }
+
+    /**
+     * Milliseconds since the oldest report that has not yet been written was accepted.
+     */
+    public long lag() {
+        long since = inFlightSince;
+        Report oldest = queue.peek();
+
+        if (since == 0 && oldest != null) {
+            since = oldest.getLastModified().getTime();
+        }
+
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    @Override
+    public void start() {
+        List<Report> pending = journal.readAll();
+
+        if (!pending.isEmpty()) {
+            log.info("Replaying {} journaled reports", pending.size());
+
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                writeOrDeadLetter(pending.subList(from, Math.min(from + batchSize, pending.size())));
+            }
+        }
+
+        journal.truncate();
+
+        running = true;
+        writer = new Thread(this::drain, "ingestion-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The journal stays open: the web container stops after the lifecycle beans, and a
+        // punch accepted in between is written on the next start
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Report first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                inFlightSince = first.getLastModified().getTime();
+                List<Report> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                writeUntilStopped(batch);
+                inFlightSince = 0;
+
+                synchronized (lock) {
+                    if (queue.isEmpty()) {
+                        journal.truncate();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeUntilStopped(List<Report> batch) throws InterruptedException {
+        while (true) {
+            try {
+                writeOrDeadLetter(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    // The reports are still in the journal and are written on the next start
+                    throw new InterruptedException("Stopped with " + batch.size() + " unwritten reports");
+                }
+
+                log.warn("Could not write {} queued reports, retrying in {} ms", batch.size(), retryMillis, e);
+                Thread.sleep(retryMillis);
+            }
+        }
+    }
+
+    /**
+     * Writes the batch and dead-letters the reports that can't be written. Only throws when
+     * Mongo is unavailable, in which case the batch should be retried.
+     */
+    private void writeOrDeadLetter(List<Report> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e.getMessage());
+                return;
+            }
+
+            // Find the reports at fault by writing them one at a time
+            log.warn("Could not write {} queued reports, writing them one at a time", batch.size(), e);
+
+            for (Report report : batch) {
+                writeOrDeadLetter(Collections.singletonList(report));
+            }
+        }
+    }
+
+    private void write(List<Report> batch) {
+        Set<Integer> duplicates = new HashSet<>();
+        Set<Integer> failed = new HashSet<>();
+
+        try (Timer.Context ignored = metricRegistry.timer("timer.ingestion.write").time()) {
+            duplicates.addAll(reportRepository.insertUnordered(batch));
+        } catch (BulkOperationException e) {
+            if (e.getErrors().isEmpty()) {
+                throw e;
+            }
+
+            // The reports without an error were written
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() == DUPLICATE_KEY) {
+                    duplicates.add(error.getIndex());
+                } else {
+                    failed.add(error.getIndex());
+                    deadLetter(batch.get(error.getIndex()), error.getMessage());
+                }
+            }
+        }
+
+        List<Report> written = new ArrayList<>(batch.size() - duplicates.size() - failed.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (duplicates.contains(i)) {
+                log.info("Skipped queued report that already exists {}", batch.get(i));
+            } else if (!failed.contains(i)) {
+                written.add(batch.get(i));
+            }
+        }
+
+        if (!written.isEmpty()) {
+            eventPublisher.publishEvent(new ReportsInsertedEvent(written));
+        }
+
+        metricRegistry.counter("counter.ingestion.written").inc(written.size());
+        metricRegistry.counter("counter.ingestion.duplicates").inc(duplicates.size());
+    }
+
+    private void deadLetter(Report report, String reason) {
+        log.error("Could not write queued report {}, moving it to the dead-letter file: {}", report, reason);
+        deadLetters.append(report);
+        metricRegistry.counter("counter.ingestion.dead-lettered").inc();
+    }
+
+    /**
+     * Whether the write may succeed when retried, because Mongo couldn't be reached or didn't
+     * answer in time, as opposed to failing for the reports themselves.
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessResourceFailureException || cause instanceof TransientDataAccessException
+                    || cause instanceof MongoSocketException || cause instanceof MongoTimeoutException
+                    || cause instanceof MongoExecutionTimeoutException || cause instanceof MongoNotPrimaryException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
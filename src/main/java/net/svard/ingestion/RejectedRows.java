@@ -0,0 +1,78 @@
+package net.svard.ingestion;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * CSV of the rows an import could not convert, with their row number in the imported
+ * file and the reason. The file is only created once the first row is rejected, and never
+ * without a directory.
+ */
+class RejectedRows implements Closeable {
+
+    private static final String[] COLUMNS = {"row", "reason", "arrival", "leave", "lunch", "total"};
+
+    private final Path directory;
+
+    private final CsvMapper mapper;
+
+    private Path file;
+
+    private SequenceWriter writer;
+
+    RejectedRows(Path directory, CsvMapper mapper) {
+        this.directory = directory;
+        this.mapper = mapper;
+    }
+
+    void write(long row, String reason, Map<String, String> values) {
+        if (directory == null) {
+            return;
+        }
+
+        try {
+            if (writer == null) {
+                Files.createDirectories(directory);
+                file = Files.createTempFile(directory, "import-", "-rejected.csv");
+                CsvSchema schema = CsvSchema.builder().addColumns(Arrays.asList(COLUMNS), CsvSchema.ColumnType.STRING)
+                        .setUseHeader(true)
+                        .build();
+                writer = mapper.writer(schema).writeValues(Files.newBufferedWriter(file));
+            }
+
+            writer.write(new Object[]{row, reason, value(values, "arrival"), value(values, "leave"),
+                    value(values, "lunch"), value(values, "total")});
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write rejected rows to " + file, e);
+        }
+    }
+
+    /**
+     * The rejected-row file, or {@code null} when no row was rejected.
+     */
+    String getFile() {
+        return file != null ? file.toString() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static String value(Map<String, String> values, String column) {
+        String value = values.get(column);
+
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,108 @@
+package net.svard.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of accepted reports, one JSON document per line. Every append is forced
+ * to disk before the punch is acknowledged. A partially written last line, left by a crash
+ * in the middle of an append, is skipped when the journal is read back.
+ */
+@Slf4j
+class ReportJournal implements Closeable {
+
+    private final Path path;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter writer;
+
+    private final FileChannel channel;
+
+    ReportJournal(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(Report.class);
+
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open ingestion journal " + path, e);
+        }
+    }
+
+    synchronized void append(Report report) {
+        try {
+            byte[] json = writer.writeValueAsBytes(report);
+            ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n');
+            line.flip();
+
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to ingestion journal " + path, e);
+        }
+    }
+
+    synchronized List<Report> readAll() {
+        List<Report> reports = new ArrayList<>();
+
+        try (InputStream in = Files.newInputStream(path);
+             MappingIterator<Report> entries = objectMapper.readerFor(Report.class).readValues(in)) {
+            while (entries.hasNextValue()) {
+                reports.add(entries.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring incomplete entry at the end of ingestion journal {}", path, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read ingestion journal " + path, e);
+        }
+
+        return reports;
+    }
+
+    synchronized void truncate() {
+        try {
+            channel.truncate(0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not truncate ingestion journal " + path, e);
+        }
+    }
+
+    synchronized long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
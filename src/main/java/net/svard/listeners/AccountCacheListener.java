@@ -0,0 +1,31 @@
+package net.svard.listeners;
+
+import net.svard.domain.Account;
+import net.svard.security.AccountDetailsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AccountCacheListener extends AbstractMongoEventListener<Account> {
+
+    private AccountDetailsService accountDetailsService;
+
+    @Autowired
+    public AccountCacheListener(AccountDetailsService accountDetailsService) {
+        this.accountDetailsService = accountDetailsService;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Account> event) {
+        // The previous username and token of the account are unknown here
+        accountDetailsService.invalidateAll();
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Account> event) {
+        accountDetailsService.invalidateAll();
+    }
+}
@@ -0,0 +1,59 @@
+package net.svard.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.repositories.FlexLedgerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class FlexLedgerListener {
+
+    private FlexLedgerRepository flexLedgerRepository;
+
+    @Autowired
+    public FlexLedgerListener(FlexLedgerRepository flexLedgerRepository) {
+        this.flexLedgerRepository = flexLedgerRepository;
+    }
+
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        update(() -> flexLedgerRepository.record(event.getPrevious(), event.getReport()));
+    }
+
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        update(() -> flexLedgerRepository.recordAll(event.getReports()));
+    }
+
+    @EventListener
+    public void reportsImported(ReportsImportedEvent event) {
+        log.info("Flexitime ledger of {} is stale after importing {} reports, rebuilding", event.getAccountId(), event.getImported());
+        update(() -> flexLedgerRepository.rebuild(event.getAccountId()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissing() {
+        if (flexLedgerRepository.count() == 0) {
+            log.info("Flexitime ledger is empty, rebuilding from reports");
+            flexLedgerRepository.rebuild();
+        }
+    }
+
+    /**
+     * Runs after the reports are written, so a failure must not fail the write and make the
+     * client repeat it.
+     */
+    private void update(Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            log.error("Could not update the flexitime ledger, rebuild it to repair", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.svard.listeners;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the punch key index of {@code reports} on startup. Punch keys are unique per
+ * account, and only reports from punch clocks have one, which takes a partial index that
+ * can't be declared on {@link Report}. The global punch key index it replaces is dropped.
+ */
+@Slf4j
+@Component
+public class ReportIndexListener {
+
+    static final String PUNCH_KEY_INDEX = "account_punchKey";
+
+    private static final String GLOBAL_PUNCH_KEY_INDEX = "punchKey";
+
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    public ReportIndexListener(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        DBCollection reports = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Report.class));
+
+        reports.createIndex(new BasicDBObject("accountId", 1).append("punchKey", 1), new BasicDBObject("name", PUNCH_KEY_INDEX)
+                .append("unique", true)
+                .append("partialFilterExpression", new BasicDBObject("punchKey", new BasicDBObject("$exists", true))));
+
+        for (DBObject index : reports.getIndexInfo()) {
+            if (GLOBAL_PUNCH_KEY_INDEX.equals(index.get("name"))) {
+                log.info("Dropping the global punch key index, punch keys are now unique per account");
+                reports.dropIndex(GLOBAL_PUNCH_KEY_INDEX);
+            }
+        }
+    }
+}
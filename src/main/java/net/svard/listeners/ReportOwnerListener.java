@@ -0,0 +1,91 @@
+package net.svard.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.repositories.FlexLedgerRepository;
+import net.svard.repositories.ReportRepository;
+import net.svard.repositories.ReportWeekRepository;
+import net.svard.repositories.YearlyStatisticRepository;
+import net.svard.security.AccountResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assigns reports written before reports had owners to the default owner on startup, and
+ * rebuilds the statistics rollup, the flexitime ledger and any week buckets, which are kept
+ * per account, when any were assigned. Refuses to start when there are such reports but no
+ * default owner account, since they would not be visible to any account. Reports that
+ * anonymous punches wrote under the owner's username before its account existed are moved
+ * to the account the same way.
+ */
+@Slf4j
+@Component
+public class ReportOwnerListener {
+
+    private ReportRepository reportRepository;
+
+    private YearlyStatisticRepository yearlyStatisticRepository;
+
+    private FlexLedgerRepository flexLedgerRepository;
+
+    private ReportWeekRepository reportWeekRepository;
+
+    private AccountResolver accountResolver;
+
+    @Autowired
+    public ReportOwnerListener(ReportRepository reportRepository, YearlyStatisticRepository yearlyStatisticRepository,
+                               FlexLedgerRepository flexLedgerRepository, ReportWeekRepository reportWeekRepository,
+                               AccountResolver accountResolver) {
+        this.reportRepository = reportRepository;
+        this.yearlyStatisticRepository = yearlyStatisticRepository;
+        this.flexLedgerRepository = flexLedgerRepository;
+        this.reportWeekRepository = reportWeekRepository;
+        this.accountResolver = accountResolver;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void assignUnownedReports() {
+        String owner = accountResolver.defaultOwner();
+        String accountId = accountResolver.defaultAccountId();
+        boolean ownerIsAccount = accountId != null && !accountId.equals(owner);
+        long unowned = reportRepository.countByAccountIdIsNull();
+
+        if (unowned > 0) {
+            if (accountId == null) {
+                throw new IllegalStateException(unowned + " reports have no owner, set timeclock.reports.default-owner to assign them");
+            }
+
+            if (!ownerIsAccount) {
+                throw new IllegalStateException(unowned + " reports have no owner and there is no account named " + owner
+                        + " to assign them to, create it before starting");
+            }
+
+            log.info("Assigning {} reports without owner to {}", reportRepository.assignOwner(accountId), accountId);
+            rebuild(accountId);
+        }
+
+        if (ownerIsAccount) {
+            // Anonymous punches made before the account existed were kept under its username
+            long moved = reportRepository.reassignOwner(owner, accountId);
+
+            if (moved > 0) {
+                log.info("Moved {} reports of {} to its account {}", moved, owner, accountId);
+                rebuild(owner);
+                rebuild(accountId);
+            }
+        }
+    }
+
+    private void rebuild(String accountId) {
+        yearlyStatisticRepository.rebuild(accountId);
+        flexLedgerRepository.rebuild(accountId);
+
+        if (reportWeekRepository.count() > 0) {
+            reportWeekRepository.rebuild(accountId);
+        }
+    }
+}
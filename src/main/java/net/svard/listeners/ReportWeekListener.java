@@ -0,0 +1,129 @@
+package net.svard.listeners;
+
+import com.mongodb.DBObject;
+import lombok.extern.slf4j.Slf4j;
+import net.svard.domain.Report;
+import net.svard.domain.ReportWeek;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.repositories.ReportWeekRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps the week buckets in step with the reports whenever there are buckets, also on
+ * instances that don't read from them yet, so that buckets prepared ahead of switching to
+ * {@code timeclock.reports.layout=week-buckets} don't miss the writes in between. Migrates
+ * to them on the first start with the layout when there are none. Imports and deletes
+ * rebuild the buckets of the accounts they touched.
+ */
+@Slf4j
+@Component
+public class ReportWeekListener extends AbstractMongoEventListener<Report> {
+
+    private ReportWeekRepository reportWeekRepository;
+
+    private MongoTemplate mongoTemplate;
+
+    private boolean bucketsRead;
+
+    private final ThreadLocal<List<String>> deletedAccounts = new ThreadLocal<>();
+
+    @Autowired
+    public ReportWeekListener(ReportWeekRepository reportWeekRepository, MongoTemplate mongoTemplate,
+                              @Value("${timeclock.reports.layout:documents}") String layout) {
+        this.reportWeekRepository = reportWeekRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.bucketsRead = "week-buckets".equals(layout);
+    }
+
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        update(() -> reportWeekRepository.record(event.getPrevious(), event.getReport()));
+    }
+
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        update(() -> reportWeekRepository.recordAll(event.getReports()));
+    }
+
+    @EventListener
+    public void reportsImported(ReportsImportedEvent event) {
+        update(() -> {
+            log.info("Week buckets of {} are stale after importing {} reports, rebuilding", event.getAccountId(), event.getImported());
+            reportWeekRepository.rebuild(event.getAccountId());
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onBeforeDelete(BeforeDeleteEvent<Report> event) {
+        if (!maintained()) {
+            return;
+        }
+
+        // Deletes only carry the query, so find the accounts it touches while their
+        // reports are still there. The query is unmapped, with id for _id and the id as a
+        // string, and has to be mapped before it is run directly.
+        MongoConverter converter = mongoTemplate.getConverter();
+        DBObject query = new QueryMapper(converter).getMappedObject(event.getDBObject(),
+                converter.getMappingContext().getPersistentEntity(Report.class));
+        deletedAccounts.set(mongoTemplate.getCollection(event.getCollectionName()).distinct("accountId", query));
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Report> event) {
+        List<String> accountIds = deletedAccounts.get();
+        deletedAccounts.remove();
+
+        if (accountIds != null) {
+            accountIds.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(reportWeekRepository::rebuild);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissing() {
+        if (bucketsRead && reportWeekRepository.count() == 0) {
+            log.info("Week buckets are empty, migrating reports, which reads every report once");
+            log.info("Wrote {} week buckets", reportWeekRepository.rebuild());
+        }
+    }
+
+    /**
+     * Updates the buckets when they are maintained. This runs after the reports are written,
+     * so a failure must not fail the write and make the client repeat it.
+     */
+    private void update(Runnable work) {
+        try {
+            if (maintained()) {
+                work.run();
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not update the week buckets, run the week-buckets migration to repair", e);
+        }
+    }
+
+    /**
+     * Whether the buckets are kept up to date: always when they are read from, and
+     * otherwise once they have been prepared.
+     */
+    private boolean maintained() {
+        return bucketsRead || mongoTemplate.exists(new Query(), ReportWeek.class);
+    }
+}
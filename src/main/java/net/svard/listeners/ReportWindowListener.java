@@ -0,0 +1,94 @@
+package net.svard.listeners;
+
+import net.svard.cache.ReportCache;
+import net.svard.cache.ReportVersions;
+import net.svard.domain.Report;
+import net.svard.events.ReportInvalidationEvent;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.events.ReportsImportedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops the cached windows and bumps the entity tags of written reports. Runs before the
+ * other listeners, so that a failure updating derived state never leaves a stale window
+ * under the current tag.
+ */
+@Component
+public class ReportWindowListener extends AbstractMongoEventListener<Report> {
+
+    private ReportCache reportCache;
+
+    private ReportVersions reportVersions;
+
+    @Autowired
+    public ReportWindowListener(ReportCache reportCache, ReportVersions reportVersions) {
+        this.reportCache = reportCache;
+        this.reportVersions = reportVersions;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        if (event.getPrevious() != null) {
+            changed(event.getPrevious());
+        }
+
+        changed(event.getReport());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        event.getReports().forEach(this::changed);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsImported(ReportsImportedEvent event) {
+        reportCache.invalidateAll();
+        reportVersions.changedAll();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void reportsInvalidated(ReportInvalidationEvent event) {
+        switch (event.getType()) {
+            case WEEK:
+            case YEAR:
+                reportCache.invalidate(event.getWindow());
+                reportVersions.changed(event.getWindow());
+                break;
+            case STATISTIC:
+                reportVersions.changed(event.getAccountId());
+                break;
+            case ALL:
+                if (event.getAccountId() != null) {
+                    reportCache.invalidateAll(event.getAccountId());
+                    reportVersions.changedAll(event.getAccountId());
+                } else {
+                    reportCache.invalidateAll();
+                    reportVersions.changedAll();
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Report> event) {
+        // Deletes only carry the query, so the affected windows are unknown
+        reportCache.invalidateAll();
+        reportVersions.changedAll();
+    }
+
+    private void changed(Report report) {
+        reportCache.invalidate(report.getAccountId(), report.getArrival());
+        reportVersions.changed(report.getAccountId(), report.getArrival());
+    }
+}
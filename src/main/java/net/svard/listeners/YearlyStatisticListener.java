@@ -0,0 +1,59 @@
+package net.svard.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.events.ReportSavedEvent;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.repositories.YearlyStatisticRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class YearlyStatisticListener {
+
+    private YearlyStatisticRepository yearlyStatisticRepository;
+
+    @Autowired
+    public YearlyStatisticListener(YearlyStatisticRepository yearlyStatisticRepository) {
+        this.yearlyStatisticRepository = yearlyStatisticRepository;
+    }
+
+    @EventListener
+    public void reportSaved(ReportSavedEvent event) {
+        update(() -> yearlyStatisticRepository.record(event.getPrevious(), event.getReport()));
+    }
+
+    @EventListener
+    public void reportsInserted(ReportsInsertedEvent event) {
+        update(() -> yearlyStatisticRepository.recordAll(event.getReports()));
+    }
+
+    @EventListener
+    public void reportsImported(ReportsImportedEvent event) {
+        log.info("Statistics rollup of {} is stale after importing {} reports, rebuilding", event.getAccountId(), event.getImported());
+        update(() -> yearlyStatisticRepository.rebuild(event.getAccountId()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissing() {
+        if (yearlyStatisticRepository.count() == 0) {
+            log.info("Statistics rollup is empty, rebuilding from reports");
+            yearlyStatisticRepository.rebuild();
+        }
+    }
+
+    /**
+     * Runs after the reports are written, so a failure must not fail the write and make the
+     * client repeat it. The rollup is left behind, which the check endpoint reports.
+     */
+    private void update(Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            log.error("Could not update the statistics rollup, rebuild it to repair", e);
+        }
+    }
+}
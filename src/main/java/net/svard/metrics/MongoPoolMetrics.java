@@ -0,0 +1,60 @@
+package net.svard.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the connection pools of the Mongo client on the actuator {@code /metrics}
+ * endpoint as {@code mongo.pool.<host>-<port>.*}. The driver registers one MBean per pool;
+ * {@code utilization} is the share of the pool that is checked out.
+ */
+@Slf4j
+@Component
+public class MongoPoolMetrics implements PublicMetrics {
+
+    private static final String POOLS = "org.mongodb.driver:type=ConnectionPool,*";
+
+    private final MBeanServer server;
+
+    public MongoPoolMetrics() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    MongoPoolMetrics(MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        try {
+            for (ObjectName pool : server.queryNames(new ObjectName(POOLS), null)) {
+                String prefix = "mongo.pool." + server.getAttribute(pool, "Host") + "-" + server.getAttribute(pool, "Port") + ".";
+                int size = (Integer) server.getAttribute(pool, "Size");
+                int checkedOut = (Integer) server.getAttribute(pool, "CheckedOutCount");
+                int max = (Integer) server.getAttribute(pool, "MaxSize");
+
+                metrics.add(new Metric<>(prefix + "size", size));
+                metrics.add(new Metric<>(prefix + "checked-out", checkedOut));
+                metrics.add(new Metric<>(prefix + "wait-queue", (Integer) server.getAttribute(pool, "WaitQueueSize")));
+                metrics.add(new Metric<>(prefix + "max", max));
+                metrics.add(new Metric<>(prefix + "utilization", max > 0 ? (double) checkedOut / max : 0.0));
+            }
+        } catch (JMException e) {
+            log.warn("Could not read the Mongo connection pools", e);
+        }
+
+        return metrics;
+    }
+}
@@ -0,0 +1,48 @@
+package net.svard.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records repository queries in two phases: the Mongo round trip that fetches the raw
+ * documents and the mapping of those documents to domain objects. The number of results
+ * is kept as a histogram. Everything ends up on the actuator {@code /metrics} endpoint
+ * under {@code timer.repository.<query>.*} and {@code histogram.repository.<query>.*}.
+ */
+@Component
+public class QueryMetrics {
+
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    public QueryMetrics(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public <D, T> List<T> query(String name, Supplier<List<D>> roundTrip, Function<D, T> mapper) {
+        List<D> documents;
+
+        try (Timer.Context ignored = metricRegistry.timer("timer.repository." + name + ".mongo").time()) {
+            documents = roundTrip.get();
+        }
+
+        List<T> results = new ArrayList<>(documents.size());
+
+        try (Timer.Context ignored = metricRegistry.timer("timer.repository." + name + ".mapping").time()) {
+            for (D document : documents) {
+                results.add(mapper.apply(document));
+            }
+        }
+
+        metricRegistry.histogram("histogram.repository." + name + ".results").update(results.size());
+
+        return results;
+    }
+}
@@ -0,0 +1,46 @@
+package net.svard.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every request per handler method as {@code timer.http.<Controller>.<method>},
+ * which unlike the actuator's per-path gauges keeps a percentile histogram.
+ */
+public class RequestTimingInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String START = RequestTimingInterceptor.class.getName() + ".start";
+
+    private MetricRegistry metricRegistry;
+
+    public RequestTimingInterceptor(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START) == null) {
+            request.setAttribute(START, System.nanoTime());
+        }
+
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START);
+
+        if (start == null || !(handler instanceof HandlerMethod)) {
+            return;
+        }
+
+        HandlerMethod method = (HandlerMethod) handler;
+        String name = "timer.http." + method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        metricRegistry.timer(name).update(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+    }
+}
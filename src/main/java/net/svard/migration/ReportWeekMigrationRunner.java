@@ -0,0 +1,48 @@
+package net.svard.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import net.svard.repositories.ReportWeekRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the week buckets from the {@code reports} collection and exits, so that they can be
+ * prepared before instances are switched to {@code timeclock.reports.layout=week-buckets}:
+ *
+ * <pre>
+ * java -jar timeclock.jar --spring.main.web-environment=false --timeclock.migrate=week-buckets
+ * </pre>
+ *
+ * Once there are buckets, every instance keeps them up to date, whether or not it reads from
+ * them. Existing buckets are replaced, so running it again repairs buckets that have drifted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "timeclock.migrate", havingValue = "week-buckets")
+public class ReportWeekMigrationRunner implements ApplicationRunner {
+
+    private final ReportWeekRepository reportWeekRepository;
+
+    private final ApplicationContext context;
+
+    @Autowired
+    public ReportWeekMigrationRunner(ReportWeekRepository reportWeekRepository, ApplicationContext context) {
+        this.reportWeekRepository = reportWeekRepository;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long started = System.currentTimeMillis();
+        long written = reportWeekRepository.rebuild();
+
+        log.info("Wrote {} week buckets in {} ms", written, System.currentTimeMillis() - started);
+
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -4,4 +4,5 @@ import net.svard.domain.Account;
 
 public interface AccountOperations {
     Account findOneByUsername(String username);
+    Account findOneByApiTokenHash(String apiTokenHash);
 }
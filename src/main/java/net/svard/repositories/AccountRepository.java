@@ -2,9 +2,11 @@ package net.svard.repositories;
 
 import net.svard.domain.Account;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.stereotype.Component;
 
 @Component
+@RepositoryRestResource(exported = false)
 public interface AccountRepository extends MongoRepository<Account, String>, AccountOperations {
 
 }
@@ -18,4 +18,12 @@ public class AccountRepositoryImpl implements AccountOperations {
 
         return mongoTemplate.findOne(query, Account.class);
     }
+
+    @Override
+    public Account findOneByApiTokenHash(String apiTokenHash) {
+        Criteria where = Criteria.where("apiTokenHash").is(apiTokenHash);
+        Query query = Query.query(where);
+
+        return mongoTemplate.findOne(query, Account.class);
+    }
 }
@@ -0,0 +1,28 @@
+package net.svard.repositories;
+
+import net.svard.domain.FlexCheckpoint;
+import net.svard.domain.Report;
+
+import java.util.Date;
+import java.util.List;
+
+public interface FlexLedgerOperations {
+    /**
+     * The last checkpoint of the account on or before {@code until}, or the last one at all
+     * when {@code until} is {@code null}.
+     */
+    FlexCheckpoint latest(String accountId, Date until);
+    void record(Report previous, Report report);
+
+    /**
+     * Adds newly inserted reports, applying each day they fall on once.
+     */
+    void recordAll(List<Report> reports);
+
+    /**
+     * Recomputes the checkpoints of one account from its reports, replacing them in place
+     * and removing the days that no longer have reports.
+     */
+    void rebuild(String accountId);
+    void rebuild();
+}
@@ -0,0 +1,12 @@
+package net.svard.repositories;
+
+import net.svard.domain.FlexCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.stereotype.Component;
+
+@Component
+@RepositoryRestResource(exported = false)
+public interface FlexLedgerRepository extends MongoRepository<FlexCheckpoint, String>, FlexLedgerOperations {
+
+}
@@ -0,0 +1,200 @@
+package net.svard.repositories;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import net.svard.domain.FlexCheckpoint;
+import net.svard.domain.Report;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code flex_ledger} of daily checkpoints incrementally as reports are
+ * written. A write touches the checkpoint of its own day and shifts the balance of the
+ * later checkpoints of the account, so the current balance is always the last checkpoint
+ * and never a pass over the reports.
+ */
+public class FlexLedgerRepositoryImpl implements FlexLedgerOperations {
+
+    private static final int REBUILD_BATCH = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Value("${timeclock.workday.norm:28800}")
+    private long norm;
+
+    @Override
+    public FlexCheckpoint latest(String accountId, Date until) {
+        Criteria where = Criteria.where("accountId").is(accountId);
+
+        if (until != null) {
+            where.and("day").lte(until);
+        }
+
+        return mongoTemplate.findOne(Query.query(where).with(new Sort(Sort.Direction.DESC, "day")), FlexCheckpoint.class);
+    }
+
+    @Override
+    public void record(Report previous, Report report) {
+        if (previous != null && previous.getAccountId().equals(report.getAccountId())
+                && FlexCheckpoint.dayOf(previous.getArrival()).equals(FlexCheckpoint.dayOf(report.getArrival()))) {
+            apply(report.getAccountId(), FlexCheckpoint.dayOf(report.getArrival()), report.getTotal() - previous.getTotal(), 0);
+            return;
+        }
+
+        if (previous != null) {
+            apply(previous.getAccountId(), FlexCheckpoint.dayOf(previous.getArrival()), -previous.getTotal(), -1);
+        }
+
+        apply(report.getAccountId(), FlexCheckpoint.dayOf(report.getArrival()), report.getTotal(), 1);
+    }
+
+    @Override
+    public void recordAll(List<Report> reports) {
+        Map<String, Map<Date, List<Report>>> byDay = reports.stream().collect(Collectors.groupingBy(Report::getAccountId,
+                Collectors.groupingBy(report -> FlexCheckpoint.dayOf(report.getArrival()), TreeMap::new, Collectors.toList())));
+
+        byDay.forEach((accountId, days) -> days.forEach((day, onDay) ->
+                apply(accountId, day, onDay.stream().mapToLong(Report::getTotal).sum(), onDay.size())));
+    }
+
+    @Override
+    public void rebuild(String accountId) {
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("accountId").is(accountId)),
+                Aggregation.project("total")
+                        .andExpression("year(arrival)").as("year")
+                        .andExpression("dayOfYear(arrival)").as("day"),
+                Aggregation.group("year", "day")
+                        .sum("total").as("worked")
+                        .count().as("reports"),
+                Aggregation.sort(Sort.Direction.ASC, "year", "day")
+        );
+
+        // Read through a cursor instead of one inline result, which is capped at 16MB, and
+        // let the server spill the group and sort to disk for accounts with many days
+        @SuppressWarnings("unchecked")
+        List<DBObject> pipeline = (List<DBObject>) agg.toDbObject("reports", Aggregation.DEFAULT_CONTEXT).get("pipeline");
+        AggregationOptions options = AggregationOptions.builder()
+                .allowDiskUse(true)
+                .outputMode(AggregationOptions.OutputMode.CURSOR)
+                .batchSize(REBUILD_BATCH)
+                .build();
+
+        List<String> rebuilt = new ArrayList<>();
+        List<FlexCheckpoint> pending = new ArrayList<>(REBUILD_BATCH);
+        long balance = 0;
+
+        try (Cursor cursor = mongoTemplate.getCollection("reports").aggregate(pipeline, options)) {
+            while (cursor.hasNext()) {
+                FlexCheckpoint checkpoint = toCheckpoint(accountId, cursor.next());
+                balance += checkpoint.getWorked() - norm;
+                checkpoint.setBalance(balance);
+                rebuilt.add(checkpoint.getId());
+                pending.add(checkpoint);
+
+                if (pending.size() == REBUILD_BATCH) {
+                    upsert(pending);
+                    pending.clear();
+                }
+            }
+        }
+
+        upsert(pending);
+
+        // A write landing between the aggregation and the upsert of its day is overwritten,
+        // as with the statistics rollup
+        mongoTemplate.remove(Query.query(Criteria.where("accountId").is(accountId).and("_id").nin(rebuilt)), FlexCheckpoint.class);
+    }
+
+    @Override
+    public void rebuild() {
+        reportRepository.findAccountIds().forEach(this::rebuild);
+    }
+
+    private void upsert(List<FlexCheckpoint> checkpoints) {
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlexCheckpoint.class);
+        checkpoints.forEach(checkpoint -> bulk.upsert(Query.query(Criteria.where("_id").is(checkpoint.getId())), new Update()
+                .set("accountId", checkpoint.getAccountId())
+                .set("day", checkpoint.getDay())
+                .set("worked", checkpoint.getWorked())
+                .set("reports", checkpoint.getReports())
+                .set("balance", checkpoint.getBalance())));
+        bulk.execute();
+    }
+
+    private static FlexCheckpoint toCheckpoint(String accountId, DBObject document) {
+        DBObject group = (DBObject) document.get("_id");
+        int year = ((Number) group.get("year")).intValue();
+        int day = ((Number) group.get("day")).intValue();
+
+        FlexCheckpoint checkpoint = new FlexCheckpoint();
+        checkpoint.setAccountId(accountId);
+        checkpoint.setDay(Date.from(LocalDate.ofYearDay(year, day).atStartOfDay(ZoneOffset.UTC).toInstant()));
+        checkpoint.setId(FlexCheckpoint.idOf(checkpoint.getAccountId(), checkpoint.getDay()));
+        checkpoint.setWorked(((Number) document.get("worked")).longValue());
+        checkpoint.setReports(((Number) document.get("reports")).intValue());
+
+        return checkpoint;
+    }
+
+    /**
+     * Adds {@code worked} seconds and {@code reports} reports to one day of the ledger and
+     * carries the change forward. The norm is charged once per day, when its first report
+     * arrives, and given back when its last report goes away.
+     */
+    private void apply(String accountId, Date day, long worked, int reports) {
+        Query byDay = Query.query(Criteria.where("_id").is(FlexCheckpoint.idOf(accountId, day)));
+        Update increment = new Update().inc("worked", worked).inc("reports", reports)
+                .setOnInsert("accountId", accountId)
+                .setOnInsert("day", day);
+        FlexCheckpoint checkpoint = mongoTemplate.findAndModify(byDay, increment,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), FlexCheckpoint.class);
+
+        if (reports > 0 && checkpoint.getReports() == reports) {
+            // A new day starts from the balance of the day before it
+            FlexCheckpoint before = mongoTemplate.findOne(Query.query(Criteria.where("accountId").is(accountId).and("day").lt(day))
+                    .with(new Sort(Sort.Direction.DESC, "day")), FlexCheckpoint.class);
+            long balance = (before != null ? before.getBalance() : 0) + checkpoint.getWorked() - norm;
+
+            mongoTemplate.updateFirst(byDay, Update.update("balance", balance), FlexCheckpoint.class);
+            shift(Criteria.where("accountId").is(accountId).and("day").gt(day), worked - norm);
+        } else if (checkpoint.getReports() <= 0) {
+            mongoTemplate.remove(byDay, FlexCheckpoint.class);
+            shift(Criteria.where("accountId").is(accountId).and("day").gt(day), worked + norm);
+        } else {
+            shift(Criteria.where("accountId").is(accountId).and("day").gte(day), worked);
+        }
+    }
+
+    private void shift(Criteria checkpoints, long delta) {
+        if (delta != 0) {
+            mongoTemplate.updateMulti(Query.query(checkpoints), new Update().inc("balance", delta), FlexCheckpoint.class);
+        }
+    }
+}
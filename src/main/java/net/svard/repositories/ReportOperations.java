@@ -1,13 +1,82 @@
 package net.svard.repositories;
 
 import net.svard.domain.Report;
+import net.svard.domain.ReportCursor;
+import net.svard.domain.ReportPatch;
+import net.svard.domain.ReportSummary;
 import net.svard.domain.Statistic;
 
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Report queries, all scoped to the reports of one account so that they use the
+ * {@code (accountId, arrival)} index.
+ */
 public interface ReportOperations {
-    List<Report> findByYear(int year);
-    List<Report> findByWeek(int week);
-    List<Report> findByYearAndWeek(int year, int week);
-    List<Statistic> stats();
+    List<Report> findByYear(String accountId, int year);
+    List<Report> findByWeek(String accountId, int week);
+    List<Report> findByYearAndWeek(String accountId, int year, int week);
+    List<Report> findPage(String accountId, ReportCursor after, int limit);
+    CloseableIterator<Report> streamAll(String accountId);
+
+    /**
+     * Streams the reports arriving from {@code from}, inclusive, until {@code to}, exclusive.
+     * Either bound may be {@code null}.
+     */
+    CloseableIterator<Report> streamBetween(String accountId, Date from, Date to);
+    List<Statistic> stats(String accountId);
+
+    /**
+     * Statistics per year, month or week of the reports arriving from {@code from},
+     * inclusive, until {@code to}, exclusive. Either bound may be {@code null}. Every year
+     * of the range is aggregated separately and concurrently.
+     */
+    List<Statistic> stats(String accountId, Date from, Date to, Statistic.Granularity granularity);
+
+    /**
+     * Sums the reports of a year per week or month in one aggregation. Overtime is counted
+     * against {@code norm} for every day with a report.
+     */
+    List<ReportSummary> summarize(String accountId, int year, ReportSummary.GroupBy groupBy, long norm);
+
+    /**
+     * Inserts the reports, which must already have ids, in one unordered bulk write.
+     * Returns the positions of reports that were skipped because their account already has
+     * their punch key.
+     */
+    Set<Integer> insertUnordered(List<Report> reports);
+
+    /**
+     * Applies the changes to the account's report and increments its version in one round
+     * trip. When the changes carry a version, the report is only changed if it is still at
+     * that version. Returns the report as it was before the changes, or {@code null} when no
+     * report matched.
+     */
+    Report update(String accountId, String id, ReportPatch changes);
+
+    /**
+     * The arrivals among {@code arrivals} that the account already has a report for.
+     */
+    Set<Date> findArrivals(String accountId, Collection<Date> arrivals);
+
+    /**
+     * Assigns reports written before reports had owners to the account. Returns the number
+     * of reports that were assigned.
+     */
+    long assignOwner(String accountId);
+
+    /**
+     * Moves the reports of one account id to another. Returns the number of reports moved.
+     */
+    long reassignOwner(String fromAccountId, String toAccountId);
+
+    /**
+     * The accounts that own any reports.
+     */
+    List<String> findAccountIds();
 }
@@ -0,0 +1,124 @@
+package net.svard.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A half-open {@code [start, end)} interval on the arrival time of a report.
+ *
+ * Weeks follow the semantics of MongoDB's {@code $week} operator in UTC: weeks begin on
+ * Sundays, week 1 begins with the first Sunday of the year and days before it belong to
+ * week 0. Matching on a precomputed interval lets the query use the index on
+ * {@code arrival} instead of projecting {@code year(arrival)} for every document.
+ */
+public final class ReportPeriod {
+    private final Date start;
+
+    private final Date end;
+
+    private ReportPeriod(LocalDate start, LocalDate end) {
+        this(toDate(start), toDate(end));
+    }
+
+    private ReportPeriod(Date start, Date end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public static ReportPeriod between(Date start, Date end) {
+        return new ReportPeriod(start, end);
+    }
+
+    public static ReportPeriod ofYear(int year) {
+        LocalDate first = LocalDate.of(year, 1, 1);
+
+        return new ReportPeriod(first, first.plusYears(1));
+    }
+
+    public static ReportPeriod ofYearAndWeek(int year, int week) {
+        LocalDate first = LocalDate.of(year, 1, 1);
+        LocalDate next = first.plusYears(1);
+        LocalDate firstSunday = first.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+
+        LocalDate start = week == 0 ? first : firstSunday.plusWeeks(week - 1);
+        LocalDate end = week == 0 ? firstSunday : start.plusWeeks(1);
+
+        return new ReportPeriod(min(start, next), min(end, next));
+    }
+
+    public static int yearOf(Date date) {
+        return date.toInstant().atZone(ZoneOffset.UTC).getYear();
+    }
+
+    public static int weekOf(Date date) {
+        LocalDate day = date.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+        int sundayBased = day.getDayOfWeek().getValue() % 7;
+
+        return (day.getDayOfYear() - 1 + 7 - sundayBased) / 7;
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    public Date getEnd() {
+        return end;
+    }
+
+    public boolean isEmpty() {
+        return !start.before(end);
+    }
+
+    public boolean contains(Date date) {
+        return date != null && !date.before(start) && date.before(end);
+    }
+
+    /**
+     * The parts of this period that fall in each calendar year, in order.
+     */
+    public List<ReportPeriod> splitByYear() {
+        List<ReportPeriod> parts = new ArrayList<>();
+
+        for (int year = yearOf(start); !isEmpty() && year <= yearOf(new Date(end.getTime() - 1)); year++) {
+            ReportPeriod whole = ofYear(year);
+            parts.add(new ReportPeriod(later(start, whole.start), earlier(end, whole.end)));
+        }
+
+        return parts;
+    }
+
+    public Criteria toCriteria(String field) {
+        return Criteria.where(field).gte(start).lt(end);
+    }
+
+    private static Date later(Date a, Date b) {
+        return a.after(b) ? a : b;
+    }
+
+    private static Date earlier(Date a, Date b) {
+        return a.before(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    @Override
+    public String toString() {
+        return "ReportPeriod{" +
+                "start=" + start +
+                ", end=" + end +
+                '}';
+    }
+}
@@ -2,9 +2,16 @@ package net.svard.repositories;
 
 import net.svard.domain.Report;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+
 @Component
+@RepositoryRestResource(exported = false)
 public interface ReportRepository extends MongoRepository<Report, String>, ReportOperations {
-
+    Report findByIdAndAccountId(String id, String accountId);
+    List<Report> findByAccountIdAndPunchKeyIn(String accountId, Collection<String> punchKeys);
+    long countByAccountIdIsNull();
 }
@@ -1,70 +1,167 @@
 package net.svard.repositories;
 
+import com.mongodb.BulkWriteError;
+import com.mongodb.DBObject;
+import net.svard.cache.ReportCache;
+import net.svard.cache.ReportWindow;
 import net.svard.domain.Report;
+import net.svard.domain.ReportCursor;
+import net.svard.domain.ReportPatch;
+import net.svard.domain.ReportSummary;
 import net.svard.domain.Statistic;
+import net.svard.metrics.QueryMetrics;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ReportRepositoryImpl implements ReportOperations {
 
+    private static final String REPORTS = "reports";
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static final String WEEK_BUCKETS = "week-buckets";
+
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    // Reads with timeclock.mongo.aggregation-read-preference
+    @Autowired
+    @Qualifier("aggregationMongoTemplate")
+    private MongoTemplate aggregationTemplate;
+
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    @Qualifier("statisticsExecutor")
+    private Executor statisticsExecutor;
+
+    @Autowired
+    private ReportWeekRepository reportWeekRepository;
+
+    // Either documents, one per report, or week-buckets, which reads years and weeks from
+    // report_weeks
+    @Value("${timeclock.reports.layout:documents}")
+    private String layout;
+
     @Override
-    public List<Report> findByYear(int year) {
-        Aggregation agg = Aggregation.newAggregation(
-                Aggregation.project("total", "arrival", "leave", "lunch")
-                        .andExpression("year(arrival)").as("year"),
-                Aggregation.match(Criteria.where("year").is(year)),
-                Aggregation.project("total", "arrival", "leave", "lunch"),
-                Aggregation.sort(Sort.Direction.ASC, "arrival")
-        );
+    public List<Report> findByYear(String accountId, int year) {
+        ReportWindow window = ReportWindow.ofYear(accountId, year);
 
-        AggregationResults<Report> result = mongoTemplate.aggregate(agg, "reports", Report.class);
+        if (WEEK_BUCKETS.equals(layout)) {
+            return reportCache.get(window, () -> queryMetrics.query("findByYear",
+                    () -> reportWeekRepository.findByYear(accountId, year), Function.identity()));
+        }
 
-        return result.getMappedResults();
+        return reportCache.get(window, () -> findInPeriods("findByYear", accountId, Collections.singletonList(window.getPeriod())));
     }
 
     @Override
-    public List<Report> findByWeek(int week) {
-        Aggregation agg = Aggregation.newAggregation(
-                Aggregation.project("total", "arrival", "leave", "lunch")
-                        .andExpression("week(arrival)").as("week"),
-                Aggregation.match(Criteria.where("week").is(week)),
-                Aggregation.project("total", "arrival", "leave", "lunch"),
-                Aggregation.sort(Sort.Direction.ASC, "arrival")
-        );
+    public List<Report> findByWeek(String accountId, int week) {
+        Report first = mongoTemplate.findOne(Query.query(owner(accountId)).with(new Sort(Sort.Direction.ASC, "arrival")), Report.class);
+        Report last = mongoTemplate.findOne(Query.query(owner(accountId)).with(new Sort(Sort.Direction.DESC, "arrival")), Report.class);
+
+        if (first == null || last == null) {
+            return Collections.emptyList();
+        }
 
-        AggregationResults<Report> result = mongoTemplate.aggregate(agg, "reports", Report.class);
+        List<ReportPeriod> periods = new ArrayList<>();
+        for (int year = ReportPeriod.yearOf(first.getArrival()); year <= ReportPeriod.yearOf(last.getArrival()); year++) {
+            ReportPeriod period = ReportPeriod.ofYearAndWeek(year, week);
 
-        return result.getMappedResults();
+            if (!period.isEmpty()) {
+                periods.add(period);
+            }
+        }
+
+        return findInPeriods("findByWeek", accountId, periods);
     }
 
     @Override
-    public List<Report> findByYearAndWeek(int year, int week) {
-        Aggregation agg = Aggregation.newAggregation(
-                Aggregation.project("total", "arrival", "leave", "lunch")
-                        .andExpression("year(arrival)").as("year")
-                        .andExpression("week(arrival)").as("week"),
-                Aggregation.match(Criteria.where("year").is(year).and("week").is(week)),
-                Aggregation.project("total", "arrival", "leave", "lunch"),
-                Aggregation.sort(Sort.Direction.ASC, "arrival")
-        );
+    public List<Report> findByYearAndWeek(String accountId, int year, int week) {
+        ReportWindow window = ReportWindow.ofYearAndWeek(accountId, year, week);
+
+        if (WEEK_BUCKETS.equals(layout)) {
+            return reportCache.get(window, () -> queryMetrics.query("findByYearAndWeek",
+                    () -> reportWeekRepository.findByYearAndWeek(accountId, year, week), Function.identity()));
+        }
+
+        return reportCache.get(window, () -> findInPeriods("findByYearAndWeek", accountId, Collections.singletonList(window.getPeriod())));
+    }
+
+    @Override
+    public List<Report> findPage(String accountId, ReportCursor after, int limit) {
+        Query query = Query.query(owner(accountId));
+
+        if (after != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("arrival").gt(after.getArrival()),
+                    // Operators are not mapped, so the id has to be an ObjectId like the stored ones
+                    Criteria.where("arrival").is(after.getArrival()).and("_id").gt(new ObjectId(after.getId()))));
+        }
+
+        query.with(keysetOrder()).limit(limit);
 
-        AggregationResults<Report> result = mongoTemplate.aggregate(agg, "reports", Report.class);
+        return find("findPage", query);
+    }
 
-        return result.getMappedResults();
+    @Override
+    public CloseableIterator<Report> streamAll(String accountId) {
+        return mongoTemplate.stream(Query.query(owner(accountId)).with(keysetOrder()), Report.class);
     }
 
     @Override
-    public List<Statistic> stats() {
+    public CloseableIterator<Report> streamBetween(String accountId, Date from, Date to) {
+        Criteria where = owner(accountId);
+
+        if (from != null || to != null) {
+            where = where.and("arrival");
+
+            if (from != null) {
+                where = where.gte(from);
+            }
+
+            if (to != null) {
+                where = where.lt(to);
+            }
+        }
+
+        return mongoTemplate.stream(Query.query(where).with(keysetOrder()), Report.class);
+    }
+
+    @Override
+    public List<Statistic> stats(String accountId) {
         Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(owner(accountId)),
                 Aggregation.project("total", "arrival").andExpression("year(arrival)").as("year"),
                 Aggregation.sort(Sort.Direction.ASC, "total"),
                 Aggregation.group("year")
@@ -78,8 +175,233 @@ public class ReportRepositoryImpl implements ReportOperations {
                 Aggregation.sort(Sort.Direction.ASC, "_id")
         );
 
-        AggregationResults<Statistic> result = mongoTemplate.aggregate(agg, "reports", Statistic.class);
+        return queryMetrics.query("stats",
+                () -> aggregationTemplate.aggregate(agg, REPORTS, DBObject.class).getMappedResults(),
+                document -> mongoTemplate.getConverter().read(Statistic.class, document));
+    }
+
+    @Override
+    public List<Statistic> stats(String accountId, Date from, Date to, Statistic.Granularity granularity) {
+        Date start = from;
+        Date end = to;
+
+        if (start == null) {
+            Report first = aggregationTemplate.findOne(Query.query(owner(accountId)).with(new Sort(Sort.Direction.ASC, "arrival")), Report.class);
+            start = first != null ? first.getArrival() : null;
+        }
+
+        if (end == null) {
+            Report last = aggregationTemplate.findOne(Query.query(owner(accountId)).with(new Sort(Sort.Direction.DESC, "arrival")), Report.class);
+            end = last != null ? new Date(last.getArrival().getTime() + 1) : null;
+        }
+
+        if (start == null || end == null) {
+            return Collections.emptyList();
+        }
+
+        // Groups never span years, so the partial results only need to be concatenated
+        List<CompletableFuture<List<Statistic>>> parts = ReportPeriod.between(start, end).splitByYear().stream()
+                .map(period -> CompletableFuture.supplyAsync(() -> statsInPeriod(accountId, period, granularity), statisticsExecutor))
+                .collect(Collectors.toList());
+
+        try {
+            return parts.stream()
+                    .flatMap(part -> part.join().stream())
+                    .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            parts.forEach(part -> part.cancel(false));
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private List<Statistic> statsInPeriod(String accountId, ReportPeriod period, Statistic.Granularity granularity) {
+        ProjectionOperation project = Aggregation.project("total", "arrival").andExpression("year(arrival)").as("year");
+        GroupOperation group;
+
+        if (granularity == Statistic.Granularity.YEAR) {
+            group = Aggregation.group("year");
+        } else {
+            project = project.andExpression(granularity == Statistic.Granularity.MONTH ? "month(arrival)" : "week(arrival)").as("period");
+            group = Aggregation.group("year", "period");
+        }
+
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(owner(accountId).andOperator(period.toCriteria("arrival"))),
+                project,
+                Aggregation.sort(Sort.Direction.ASC, "total"),
+                group.sum("total").as("sum")
+                        .avg("total").as("avg")
+                        .max("total").as("longestTime")
+                        .min("total").as("shortestTime")
+                        .first("arrival").as("shortestDate")
+                        .last("arrival").as("longestDate"),
+                Aggregation.sort(Sort.Direction.ASC, "_id")
+        );
+
+        return queryMetrics.query("statsInPeriod",
+                () -> aggregationTemplate.aggregate(agg, REPORTS, DBObject.class).getMappedResults(),
+                this::toStatistic);
+    }
+
+    private Statistic toStatistic(DBObject document) {
+        Object id = document.get("_id");
+
+        if (id instanceof DBObject) {
+            document.put("_id", ((DBObject) id).get("year"));
+            document.put("period", ((DBObject) id).get("period"));
+        }
+
+        return mongoTemplate.getConverter().read(Statistic.class, document);
+    }
+
+    @Override
+    public List<ReportSummary> summarize(String accountId, int year, ReportSummary.GroupBy groupBy, long norm) {
+        String period = groupBy == ReportSummary.GroupBy.WEEK ? "week(arrival)" : "month(arrival)";
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(owner(accountId).andOperator(ReportPeriod.ofYear(year).toCriteria("arrival"))),
+                Aggregation.project("total", "lunch")
+                        .andExpression(period).as("period")
+                        .andExpression("dayOfYear(arrival)").as("day"),
+                // Several reports on the same day count as one day
+                Aggregation.group("period", "day")
+                        .sum("total").as("total")
+                        .sum("lunch").as("lunch"),
+                Aggregation.group("period")
+                        .sum("total").as("total")
+                        .sum("lunch").as("lunch")
+                        .count().as("days"),
+                Aggregation.sort(Sort.Direction.ASC, "_id")
+        );
+
+        return queryMetrics.query("summarize",
+                () -> aggregationTemplate.aggregate(agg, REPORTS, DBObject.class).getMappedResults(),
+                document -> toSummary(year, norm, document));
+    }
+
+    private static ReportSummary toSummary(int year, long norm, DBObject document) {
+        ReportSummary summary = new ReportSummary();
+        summary.setYear(year);
+        summary.setPeriod(((Number) document.get("_id")).intValue());
+        summary.setTotal(((Number) document.get("total")).longValue());
+        summary.setLunch(((Number) document.get("lunch")).longValue());
+        summary.setDays(((Number) document.get("days")).intValue());
+        summary.setOvertime(summary.getTotal() - summary.getDays() * norm);
+
+        return summary;
+    }
+
+    private List<Report> findInPeriods(String name, String accountId, List<ReportPeriod> periods) {
+        if (periods.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Criteria where = periods.size() == 1
+                ? periods.get(0).toCriteria("arrival")
+                : new Criteria().orOperator(periods.stream()
+                        .map(period -> period.toCriteria("arrival"))
+                        .toArray(Criteria[]::new));
+
+        Query query = Query.query(owner(accountId)).addCriteria(where).with(new Sort(Sort.Direction.ASC, "arrival"));
+
+        return find(name, query);
+    }
+
+    private List<Report> find(String name, Query query) {
+        return queryMetrics.query(name,
+                () -> mongoTemplate.find(query, DBObject.class, REPORTS),
+                document -> mongoTemplate.getConverter().read(Report.class, document));
+    }
+
+    @Override
+    public Set<Integer> insertUnordered(List<Report> reports) {
+        if (reports.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Report.class).insert(reports).execute();
+            return Collections.emptySet();
+        } catch (BulkOperationException e) {
+            Set<Integer> duplicates = new HashSet<>();
+
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+
+                duplicates.add(error.getIndex());
+            }
+
+            return duplicates;
+        }
+    }
+
+    @Override
+    public Report update(String accountId, String id, ReportPatch changes) {
+        Criteria where = Criteria.where("_id").is(id).and("accountId").is(accountId);
+
+        if (changes.getVersion() != null) {
+            where.and("version").is(changes.getVersion());
+        }
+
+        Update update = new Update().inc("version", 1);
+        setIfPresent(update, "arrival", changes.getArrival());
+        setIfPresent(update, "leave", changes.getLeave());
+        setIfPresent(update, "lunch", changes.getLunch());
+        setIfPresent(update, "total", changes.getTotal());
+        setIfPresent(update, "lastModified", changes.getLastModified());
+
+        return mongoTemplate.findAndModify(Query.query(where), update, Report.class);
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    @Override
+    public Set<Date> findArrivals(String accountId, Collection<Date> arrivals) {
+        if (arrivals.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Query query = Query.query(owner(accountId).and("arrival").in(arrivals));
+        query.fields().include("arrival").exclude("_id");
+
+        return mongoTemplate.find(query, DBObject.class, REPORTS).stream()
+                .map(document -> (Date) document.get("arrival"))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public long assignOwner(String accountId) {
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("accountId").is(null)),
+                Update.update("accountId", accountId), Report.class).getN();
+    }
+
+    @Override
+    public long reassignOwner(String fromAccountId, String toAccountId) {
+        return mongoTemplate.updateMulti(Query.query(owner(fromAccountId)),
+                Update.update("accountId", toAccountId), Report.class).getN();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> findAccountIds() {
+        return mongoTemplate.getCollection(REPORTS).distinct("accountId", Query.query(Criteria.where("accountId").ne(null)).getQueryObject());
+    }
+
+    private static Criteria owner(String accountId) {
+        return Criteria.where("accountId").is(accountId);
+    }
 
-        return result.getMappedResults();
+    private static Sort keysetOrder() {
+        return new Sort(Sort.Direction.ASC, "arrival").and(new Sort(Sort.Direction.ASC, "_id"));
     }
 }
@@ -0,0 +1,36 @@
+package net.svard.repositories;
+
+import net.svard.domain.Report;
+
+import java.util.List;
+
+public interface ReportWeekOperations {
+    /**
+     * The reports of the week in order of arrival, read from its bucket in one point read.
+     */
+    List<Report> findByYearAndWeek(String accountId, int year, int week);
+
+    /**
+     * The reports of the year in order of arrival, read from the buckets of its weeks.
+     */
+    List<Report> findByYear(String accountId, int year);
+    void record(Report previous, Report report);
+
+    /**
+     * Adds newly inserted reports with one bulk write of an upsert per bucket.
+     */
+    void recordAll(List<Report> reports);
+
+    /**
+     * Replaces the buckets of one account with buckets built from its reports, upserting
+     * them in place and then removing the weeks that no longer have reports. Returns the
+     * number of buckets written.
+     */
+    long rebuild(String accountId);
+
+    /**
+     * Rebuilds the buckets of every account. This is also the migration to the bucketed
+     * layout. Returns the number of buckets written.
+     */
+    long rebuild();
+}
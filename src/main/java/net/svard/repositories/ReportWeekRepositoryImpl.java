@@ -0,0 +1,261 @@
+package net.svard.repositories;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.DBObject;
+import net.svard.domain.Report;
+import net.svard.domain.ReportWeek;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code report_weeks} buckets incrementally as reports are written. A write
+ * moves the report between the buckets of its previous and its new week and adjusts their
+ * sums, and is ignored if the report is already in the bucket.
+ */
+public class ReportWeekRepositoryImpl implements ReportWeekOperations {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static final String REPORTS = "reports";
+
+    private static final Comparator<Report> BY_ARRIVAL = Comparator.comparing(Report::getArrival)
+            .thenComparing(Report::getId);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Report> findByYearAndWeek(String accountId, int year, int week) {
+        ReportWeek bucket = mongoTemplate.findById(ReportWeek.idOf(accountId, year, week), ReportWeek.class);
+
+        return bucket != null ? daysOf(bucket) : Collections.emptyList();
+    }
+
+    @Override
+    public List<Report> findByYear(String accountId, int year) {
+        String prefix = ReportWeek.yearPrefixOf(accountId, year);
+        // ':' is followed by ';', so this bounds the ids starting with the prefix
+        String end = prefix.substring(0, prefix.length() - 1) + ';';
+        // The range also holds accounts whose id extends this one with ':<year>'
+        Query query = Query.query(Criteria.where("_id").gte(prefix).lt(end).and("accountId").is(accountId))
+                .with(new Sort(Sort.Direction.ASC, "_id"));
+
+        List<Report> reports = new ArrayList<>();
+        for (ReportWeek bucket : mongoTemplate.find(query, ReportWeek.class)) {
+            reports.addAll(daysOf(bucket));
+        }
+
+        return reports;
+    }
+
+    @Override
+    public void record(Report previous, Report report) {
+        if (previous != null) {
+            remove(previous);
+        }
+
+        add(report);
+    }
+
+    @Override
+    public void recordAll(List<Report> reports) {
+        if (reports.isEmpty()) {
+            return;
+        }
+
+        List<List<Report>> buckets = new ArrayList<>(reports.stream()
+                .collect(Collectors.groupingBy(ReportWeekRepositoryImpl::idOf, LinkedHashMap::new, Collectors.toList()))
+                .values());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReportWeek.class);
+
+        for (List<Report> inBucket : buckets) {
+            Report first = inBucket.get(0);
+            List<DBObject> days = inBucket.stream().map(this::toDay).collect(Collectors.toList());
+            Query noneInBucket = Query.query(Criteria.where("_id").is(idOf(first))
+                    .and("days._id").nin(days.stream().map(day -> day.get("_id")).collect(Collectors.toList())));
+            Update update = new Update().push("days").each(days.toArray())
+                    .inc("reports", inBucket.size())
+                    .inc("total", inBucket.stream().mapToLong(Report::getTotal).sum())
+                    .inc("lunch", inBucket.stream().mapToLong(Report::getLunch).sum())
+                    .setOnInsert("accountId", first.getAccountId())
+                    .setOnInsert("year", ReportPeriod.yearOf(first.getArrival()))
+                    .setOnInsert("week", ReportPeriod.weekOf(first.getArrival()));
+            bulk.upsert(noneInBucket, update);
+        }
+
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+
+                // The bucket already holds some of the reports, so add them one at a time
+                buckets.get(error.getIndex()).forEach(this::add);
+            }
+        }
+    }
+
+    @Override
+    public long rebuild(String accountId) {
+        Query query = Query.query(Criteria.where("accountId").is(accountId).and("arrival").ne(null))
+                .with(new Sort(Sort.Direction.ASC, "arrival"));
+        List<ReportWeek> batch = new ArrayList<>(BATCH_SIZE);
+        List<String> rebuilt = new ArrayList<>();
+        ReportWeek bucket = null;
+
+        // Sorted by arrival, the reports of a bucket are adjacent
+        try (CloseableIterator<Report> reports = mongoTemplate.stream(query, Report.class)) {
+            while (reports.hasNext()) {
+                Report report = reports.next();
+
+                if (bucket == null || !bucket.getId().equals(idOf(report))) {
+                    if (bucket != null) {
+                        batch.add(bucket);
+
+                        if (batch.size() == BATCH_SIZE) {
+                            upsert(batch, rebuilt);
+                        }
+                    }
+
+                    bucket = new ReportWeek();
+                    bucket.setId(idOf(report));
+                    bucket.setAccountId(report.getAccountId());
+                    bucket.setYear(ReportPeriod.yearOf(report.getArrival()));
+                    bucket.setWeek(ReportPeriod.weekOf(report.getArrival()));
+                }
+
+                bucket.getDays().add(ReportWeek.Day.of(report));
+                bucket.setReports(bucket.getReports() + 1);
+                bucket.setTotal(bucket.getTotal() + report.getTotal());
+                bucket.setLunch(bucket.getLunch() + report.getLunch());
+            }
+        }
+
+        if (bucket != null) {
+            batch.add(bucket);
+        }
+
+        upsert(batch, rebuilt);
+
+        // A write landing between the read of its week and the upsert of its bucket is
+        // overwritten, as with the statistics rollup
+        mongoTemplate.remove(Query.query(Criteria.where("accountId").is(accountId).and("_id").nin(rebuilt)), ReportWeek.class);
+
+        return rebuilt.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long rebuild() {
+        List<String> accountIds = mongoTemplate.getCollection(REPORTS)
+                .distinct("accountId", Query.query(Criteria.where("accountId").ne(null)).getQueryObject());
+        long written = 0;
+
+        for (String accountId : accountIds) {
+            written += rebuild(accountId);
+        }
+
+        mongoTemplate.remove(Query.query(Criteria.where("accountId").nin(accountIds)), ReportWeek.class);
+
+        return written;
+    }
+
+    /**
+     * Replaces the buckets in place with one unordered bulk write, so that readers never
+     * see a week without its bucket while it is rebuilt.
+     */
+    private void upsert(List<ReportWeek> batch, List<String> rebuilt) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReportWeek.class);
+
+        for (ReportWeek bucket : batch) {
+            DBObject document = new BasicDBObject();
+            mongoTemplate.getConverter().write(bucket, document);
+            bulk.upsert(Query.query(Criteria.where("_id").is(bucket.getId())), Update.fromDBObject(document, "_id"));
+            rebuilt.add(bucket.getId());
+        }
+
+        bulk.execute();
+        batch.clear();
+    }
+
+    private void add(Report report) {
+        DBObject day = toDay(report);
+        Query notInBucket = Query.query(Criteria.where("_id").is(idOf(report)).and("days._id").ne(day.get("_id")));
+        Update update = new Update().push("days", day)
+                .inc("reports", 1)
+                .inc("total", report.getTotal())
+                .inc("lunch", report.getLunch())
+                .setOnInsert("accountId", report.getAccountId())
+                .setOnInsert("year", ReportPeriod.yearOf(report.getArrival()))
+                .setOnInsert("week", ReportPeriod.weekOf(report.getArrival()));
+
+        try {
+            mongoTemplate.upsert(notInBucket, update, ReportWeek.class);
+        } catch (DuplicateKeyException e) {
+            // The bucket exists and already holds the report
+        }
+    }
+
+    private void remove(Report report) {
+        Object id = toDay(report).get("_id");
+        Query inBucket = Query.query(Criteria.where("_id").is(idOf(report)).and("days._id").is(id));
+        Update update = new Update().pull("days", new BasicDBObject("_id", id))
+                .inc("reports", -1)
+                .inc("total", -report.getTotal())
+                .inc("lunch", -report.getLunch());
+
+        ReportWeek bucket = mongoTemplate.findAndModify(inBucket, update, FindAndModifyOptions.options().returnNew(true), ReportWeek.class);
+
+        if (bucket != null && bucket.getReports() <= 0) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(bucket.getId()).and("reports").lte(0)), ReportWeek.class);
+        }
+    }
+
+    /**
+     * The report as it is embedded in a bucket, with the same {@code _id} as in
+     * {@code reports}.
+     */
+    private DBObject toDay(Report report) {
+        DBObject day = new BasicDBObject();
+        mongoTemplate.getConverter().write(ReportWeek.Day.of(report), day);
+        day.removeField("_class");
+
+        return day;
+    }
+
+    private static String idOf(Report report) {
+        return ReportWeek.idOf(report.getAccountId(), ReportPeriod.yearOf(report.getArrival()), ReportPeriod.weekOf(report.getArrival()));
+    }
+
+    private static List<Report> daysOf(ReportWeek bucket) {
+        return bucket.getDays().stream()
+                .map(day -> day.toReport(bucket.getAccountId()))
+                .sorted(BY_ARRIVAL)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,29 @@
+package net.svard.repositories;
+
+import net.svard.domain.Report;
+import net.svard.domain.Statistic;
+import net.svard.domain.StatisticsCheck;
+
+import java.util.List;
+
+public interface YearlyStatisticOperations {
+    List<Statistic> rollup(String accountId);
+    void record(Report previous, Report report);
+
+    /**
+     * Adds newly inserted reports with one bulk write.
+     */
+    void recordAll(List<Report> reports);
+
+    /**
+     * Recomputes the years of the account from its reports. Each year is replaced in place
+     * and years without reports are removed afterwards, so the rollup is never read empty.
+     */
+    void rebuild(String accountId);
+
+    /**
+     * Recomputes the rollup of every account that has reports.
+     */
+    void rebuild();
+    StatisticsCheck check(String accountId);
+}
@@ -0,0 +1,212 @@
+package net.svard.repositories;
+
+import com.mongodb.DBObject;
+import net.svard.domain.Report;
+import net.svard.domain.Statistic;
+import net.svard.domain.StatisticsCheck;
+import net.svard.domain.YearlyStatistic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code yearly_stats} rollup incrementally as reports are written, so that
+ * reading the statistics costs one document per account and year instead of a pass over all
+ * the reports of the account.
+ */
+public class YearlyStatisticRepositoryImpl implements YearlyStatisticOperations {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Override
+    public List<Statistic> rollup(String accountId) {
+        Query query = Query.query(Criteria.where("accountId").is(accountId)).with(new Sort(Sort.Direction.ASC, "year"));
+
+        return mongoTemplate.find(query, YearlyStatistic.class).stream()
+                .map(YearlyStatistic::toStatistic)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void record(Report previous, Report report) {
+        if (previous != null) {
+            remove(previous);
+        }
+
+        addAll(Collections.singletonList(report));
+    }
+
+    @Override
+    public void recordAll(List<Report> reports) {
+        addAll(reports);
+    }
+
+    @Override
+    public void rebuild(String accountId) {
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("accountId").is(accountId)),
+                Aggregation.project("accountId", "total", "arrival").andExpression("year(arrival)").as("year"),
+                Aggregation.sort(Sort.Direction.ASC, "total"),
+                Aggregation.group("accountId", "year")
+                        .sum("total").as("sum")
+                        .count().as("count")
+                        .min("total").as("shortestTime")
+                        .first("arrival").as("shortestDate")
+                        .max("total").as("longestTime")
+                        .last("arrival").as("longestDate")
+        );
+
+        List<YearlyStatistic> statistics = mongoTemplate.aggregate(agg, "reports", DBObject.class).getMappedResults().stream()
+                .map(this::toYearlyStatistic)
+                .collect(Collectors.toList());
+
+        // An increment landing between the aggregation and the save of its year is
+        // overwritten, which the check endpoint reports
+        statistics.forEach(mongoTemplate::save);
+
+        List<String> rebuilt = statistics.stream().map(YearlyStatistic::getId).collect(Collectors.toList());
+        mongoTemplate.remove(Query.query(Criteria.where("accountId").is(accountId).and("_id").nin(rebuilt)), YearlyStatistic.class);
+    }
+
+    @Override
+    public void rebuild() {
+        reportRepository.findAccountIds().forEach(this::rebuild);
+    }
+
+    @Override
+    public StatisticsCheck check(String accountId) {
+        Map<Integer, Statistic> live = reportRepository.stats(accountId).stream()
+                .collect(Collectors.toMap(Statistic::getId, Function.identity()));
+        Map<Integer, Statistic> rolledUp = rollup(accountId).stream()
+                .collect(Collectors.toMap(Statistic::getId, Function.identity()));
+
+        List<Integer> mismatched = new ArrayList<>();
+        live.forEach((year, statistic) -> {
+            if (!statistic.sameAs(rolledUp.get(year))) {
+                mismatched.add(year);
+            }
+        });
+        rolledUp.keySet().stream()
+                .filter(year -> !live.containsKey(year))
+                .forEach(mismatched::add);
+
+        mismatched.sort(Integer::compare);
+
+        return new StatisticsCheck(mismatched);
+    }
+
+    private YearlyStatistic toYearlyStatistic(DBObject document) {
+        DBObject group = (DBObject) document.get("_id");
+        String accountId = (String) group.get("accountId");
+        int year = ((Number) group.get("year")).intValue();
+
+        document.put("_id", YearlyStatistic.idOf(accountId, year));
+        document.put("accountId", accountId);
+        document.put("year", year);
+
+        return mongoTemplate.getConverter().read(YearlyStatistic.class, document);
+    }
+
+    /**
+     * Adds the reports with one ordered bulk write of three updates per year: the sums, and
+     * the shortest and longest report of the year when the added ones beat them.
+     */
+    private void addAll(List<Report> reports) {
+        if (reports.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Report>> byYear = reports.stream().collect(Collectors.groupingBy(
+                report -> YearlyStatistic.idOf(report.getAccountId(), ReportPeriod.yearOf(report.getArrival())),
+                LinkedHashMap::new, Collectors.toList()));
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, YearlyStatistic.class);
+
+        byYear.forEach((id, inYear) -> {
+            Report first = inYear.get(0);
+            Report shortest = inYear.stream().min(Comparator.comparingLong(Report::getTotal)).get();
+            Report longest = inYear.stream().max(Comparator.comparingLong(Report::getTotal)).get();
+            Update increment = new Update()
+                    .inc("sum", inYear.stream().mapToLong(Report::getTotal).sum())
+                    .inc("count", inYear.size())
+                    .setOnInsert("accountId", first.getAccountId())
+                    .setOnInsert("year", ReportPeriod.yearOf(first.getArrival()));
+            bulk.upsert(Query.query(Criteria.where("_id").is(id)), increment);
+
+            bulk.updateOne(Query.query(Criteria.where("_id").is(id).orOperator(
+                    Criteria.where("shortestTime").gt(shortest.getTotal()),
+                    Criteria.where("shortestDate").exists(false))), new Update()
+                    .set("shortestTime", shortest.getTotal())
+                    .set("shortestDate", shortest.getArrival()));
+
+            bulk.updateOne(Query.query(Criteria.where("_id").is(id).orOperator(
+                    Criteria.where("longestTime").lt(longest.getTotal()),
+                    Criteria.where("longestDate").exists(false))), new Update()
+                    .set("longestTime", longest.getTotal())
+                    .set("longestDate", longest.getArrival()));
+        });
+
+        bulk.execute();
+    }
+
+    private void remove(Report report) {
+        int year = ReportPeriod.yearOf(report.getArrival());
+        String id = YearlyStatistic.idOf(report.getAccountId(), year);
+        Query byYear = Query.query(Criteria.where("_id").is(id));
+        Update decrement = new Update().inc("sum", -report.getTotal()).inc("count", -1);
+        YearlyStatistic statistic = mongoTemplate.findAndModify(byYear, decrement, YearlyStatistic.class);
+
+        if (statistic == null) {
+            return;
+        }
+
+        if (statistic.getCount() <= 1) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(id).and("count").lte(0)), YearlyStatistic.class);
+        } else if (isRecord(report, statistic.getShortestTime(), statistic.getShortestDate())
+                || isRecord(report, statistic.getLongestTime(), statistic.getLongestDate())) {
+            // The removed report held the minimum or maximum, which can't be undone
+            // incrementally. Recompute both from the reports of that year only.
+            resetRecords(report.getAccountId(), year);
+        }
+    }
+
+    private void resetRecords(String accountId, int year) {
+        Criteria inYear = Criteria.where("accountId").is(accountId).andOperator(ReportPeriod.ofYear(year).toCriteria("arrival"));
+        Report shortest = mongoTemplate.findOne(Query.query(inYear)
+                .with(new Sort(Sort.Direction.ASC, "total")), Report.class);
+        Report longest = mongoTemplate.findOne(Query.query(inYear)
+                .with(new Sort(Sort.Direction.DESC, "total")), Report.class);
+
+        if (shortest == null || longest == null) {
+            return;
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(YearlyStatistic.idOf(accountId, year))), new Update()
+                .set("shortestTime", shortest.getTotal())
+                .set("shortestDate", shortest.getArrival())
+                .set("longestTime", longest.getTotal())
+                .set("longestDate", longest.getArrival()), YearlyStatistic.class);
+    }
+
+    private static boolean isRecord(Report report, long time, Date date) {
+        return report.getTotal() == time && report.getArrival().equals(date);
+    }
+}
@@ -0,0 +1,90 @@
+package net.svard.security;
+
+import net.svard.cache.ExpiringLruCache;
+import net.svard.domain.Account;
+import net.svard.repositories.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Looks up accounts by username for logins and by API token for punch clocks, keeping the
+ * results in bounded caches that expire after {@code timeclock.security.cache.ttl-seconds}.
+ * Both caches are cleared whenever an account is written. Counters are published on the
+ * actuator {@code /metrics} endpoint.
+ */
+@Component
+public class AccountDetailsService implements UserDetailsService, PublicMetrics {
+
+    private final AccountRepository accountRepository;
+
+    private final ExpiringLruCache<String, Account> byUsername;
+
+    private final ExpiringLruCache<String, Account> byTokenHash;
+
+    @Autowired
+    public AccountDetailsService(AccountRepository accountRepository,
+                                 @Value("${timeclock.security.cache.max-entries:1024}") int maxEntries,
+                                 @Value("${timeclock.security.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.accountRepository = accountRepository;
+        this.byUsername = new ExpiringLruCache<>(maxEntries, ttlSeconds * 1000);
+        this.byTokenHash = new ExpiringLruCache<>(maxEntries, ttlSeconds * 1000);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        Account account = byUsername.get(username);
+
+        if (account == null) {
+            account = accountRepository.findOneByUsername(username);
+
+            if (account == null) {
+                throw new UsernameNotFoundException(username);
+            }
+
+            byUsername.put(username, account);
+        }
+
+        return account;
+    }
+
+    /**
+     * Returns the account the token was issued to, or {@code null} when it is unknown.
+     */
+    public Account loadAccountByApiToken(String token) {
+        String hash = ApiTokens.hash(token);
+        Account account = byTokenHash.get(hash);
+
+        if (account == null) {
+            account = accountRepository.findOneByApiTokenHash(hash);
+
+            if (account != null) {
+                byTokenHash.put(hash, account);
+            }
+        }
+
+        return account;
+    }
+
+    public void invalidateAll() {
+        byUsername.clear();
+        byTokenHash.clear();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("cache.accounts.size", byUsername.size() + byTokenHash.size()),
+                new Metric<>("cache.accounts.hits", byUsername.getHits() + byTokenHash.getHits()),
+                new Metric<>("cache.accounts.misses", byUsername.getMisses() + byTokenHash.getMisses()),
+                new Metric<>("cache.accounts.evictions", byUsername.getEvictions() + byTokenHash.getEvictions()));
+    }
+}
@@ -0,0 +1,83 @@
+package net.svard.security;
+
+import net.svard.domain.Account;
+import net.svard.repositories.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the account that owns the reports of the current request. Authenticated
+ * {@link Account}s are identified by their id, other principals by their name. Anonymous
+ * punches are owned by {@code timeclock.reports.default-owner}, a username, and are
+ * refused when it is not configured.
+ */
+@Component
+public class AccountResolver {
+
+    private AccountRepository accountRepository;
+
+    private String defaultOwner;
+
+    private volatile String defaultAccountId;
+
+    @Autowired
+    public AccountResolver(AccountRepository accountRepository,
+                           @Value("${timeclock.reports.default-owner:}") String defaultOwner) {
+        this.accountRepository = accountRepository;
+        this.defaultOwner = defaultOwner;
+    }
+
+    public String currentAccountId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            String accountId = defaultAccountId();
+
+            if (accountId == null) {
+                throw new AccessDeniedException("Anonymous reports require timeclock.reports.default-owner");
+            }
+
+            return accountId;
+        }
+
+        Object principal = authentication.getPrincipal();
+
+        return principal instanceof Account ? ((Account) principal).getId() : authentication.getName();
+    }
+
+    /**
+     * The account id of the default owner, or {@code null} when none is configured.
+     * Falls back to the username itself, which is what principals other than
+     * {@link Account}s are identified by, while there is no such account. The fallback isn't
+     * kept, so an account created later takes over.
+     */
+    public String defaultAccountId() {
+        if (defaultOwner.isEmpty()) {
+            return null;
+        }
+
+        if (defaultAccountId == null) {
+            Account account = accountRepository.findOneByUsername(defaultOwner);
+
+            if (account == null) {
+                return defaultOwner;
+            }
+
+            defaultAccountId = account.getId();
+        }
+
+        return defaultAccountId;
+    }
+
+    /**
+     * The configured username of the default owner, or {@code null} when none is configured.
+     */
+    public String defaultOwner() {
+        return defaultOwner.isEmpty() ? null : defaultOwner;
+    }
+}
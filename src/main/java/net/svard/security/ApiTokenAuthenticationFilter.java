@@ -0,0 +1,56 @@
+package net.svard.security;
+
+import net.svard.domain.Account;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying an {@code X-Api-Token} header as the account the token was
+ * issued to. Requests with an unknown token are answered with {@code 401}, requests without
+ * the header are passed on unauthenticated.
+ */
+public class ApiTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Api-Token";
+
+    private final AccountDetailsService accountDetailsService;
+
+    public ApiTokenAuthenticationFilter(AccountDetailsService accountDetailsService) {
+        this.accountDetailsService = accountDetailsService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = request.getHeader(HEADER);
+
+        if (token == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Account account = accountDetailsService.loadAccountByApiToken(token);
+
+        if (account == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unknown API token");
+            return;
+        }
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(account, null, account.getAuthorities()));
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Token requests are stateless, don't let the authentication end up in a session
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package net.svard.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * API tokens for punch clocks. Tokens are 256 random bits, so unlike passwords they don't
+ * need a slow hash: a single SHA-256 is enough to keep them out of the database, and it is
+ * cheap enough to compute on every request.
+ */
+public final class ApiTokens {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ApiTokens() {
+    }
+
+    public static String generate() {
+        byte[] token = new byte[32];
+        RANDOM.nextBytes(token);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    public static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.svard.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExpiringLruCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(2, 60000);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testExpiresEntries() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(2, 0);
+        cache.put("a", 1);
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(2, 60000);
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("b");
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(4, 60000);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        Assert.assertEquals(1, cache.removeIf("a"::equals));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(2), cache.get("b"));
+    }
+}
@@ -0,0 +1,55 @@
+package net.svard.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+public class ReportVersionsTest {
+
+    private static final ReportWindow WEEK = ReportWindow.ofYearAndWeek("user", 2016, 42);
+
+    // Tuesday of week 42 of 2016
+    private static final Date IN_WEEK = new Date(1476784800000L);
+
+    @Test
+    public void testTagIsStableUntilChanged() {
+        ReportVersions versions = new ReportVersions(100, 3600);
+        String tag = versions.etag(WEEK);
+
+        Assert.assertEquals(tag, versions.etag(WEEK));
+
+        versions.changed("user", IN_WEEK);
+
+        Assert.assertNotEquals(tag, versions.etag(WEEK));
+    }
+
+    @Test
+    public void testChangedAllChangesEveryTagOfTheAccount() {
+        ReportVersions versions = new ReportVersions(100, 3600);
+        String week = versions.etag(WEEK);
+        String all = versions.etag("user");
+        String other = versions.etag("other");
+
+        versions.changedAll("user");
+
+        Assert.assertNotEquals(week, versions.etag(WEEK));
+        Assert.assertNotEquals(all, versions.etag("user"));
+        Assert.assertEquals(other, versions.etag("other"));
+    }
+
+    @Test
+    public void testEvictedVersionDoesNotRepeatAnOldTag() {
+        ReportVersions versions = new ReportVersions(2, 3600);
+        String before = versions.etag(WEEK);
+        versions.changed("user", IN_WEEK);
+        String after = versions.etag(WEEK);
+
+        // Evicts the versions of the week and of the account
+        versions.etag(ReportWindow.ofYear("other", 2015));
+
+        String evicted = versions.etag(WEEK);
+        Assert.assertNotEquals(before, evicted);
+        Assert.assertNotEquals(after, evicted);
+    }
+}
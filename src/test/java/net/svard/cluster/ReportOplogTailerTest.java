@@ -0,0 +1,108 @@
+package net.svard.cluster;
+
+import net.svard.cache.ReportWindow;
+import net.svard.events.ReportInvalidationEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+public class ReportOplogTailerTest {
+
+    // 2016-11-17T06:55:24Z, week 46
+    private static final Date ARRIVAL = new Date(1479365724000L);
+
+    private ObjectId id;
+
+    private Document current;
+
+    private ReportOplogTailer tailer;
+
+    @Before
+    public void setUp() {
+        id = new ObjectId();
+        current = new Document("_id", id).append("accountId", "user").append("arrival", ARRIVAL);
+        tailer = new ReportOplogTailer(null, null, null, null, 0) {
+            @Override
+            Document lookup(Object id) {
+                return current;
+            }
+        };
+    }
+
+    @Test
+    public void testInsertInvalidatesWindowsOfTheReport() {
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("i", current, null));
+
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(ReportWindow.ofYearAndWeek("user", 2016, 46), events.get(0).getWindow());
+        Assert.assertEquals(ReportWindow.ofYear("user", 2016), events.get(1).getWindow());
+        Assert.assertEquals(ReportInvalidationEvent.Type.STATISTIC, events.get(2).getType());
+        Assert.assertEquals(2016, events.get(2).getYear());
+    }
+
+    @Test
+    public void testUpdateKeepingArrivalInvalidatesWindowsOfTheReport() {
+        Document update = new Document("$set", new Document("lunch", 1800L)).append("$inc", new Document("version", 1L));
+
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("u", update, new Document("_id", id)));
+
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(ReportWindow.ofYearAndWeek("user", 2016, 46), events.get(0).getWindow());
+    }
+
+    @Test
+    public void testUpdateMovingArrivalInvalidatesTheAccount() {
+        Document update = new Document("$set", new Document("arrival", new Date()));
+
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("u", update, new Document("_id", id)));
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(ReportInvalidationEvent.Type.ALL, events.get(0).getType());
+        Assert.assertEquals("user", events.get(0).getAccountId());
+    }
+
+    @Test
+    public void testReplacementInvalidatesTheAccountWithoutLookup() {
+        current = null;
+
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("u", new Document("accountId", "user").append("arrival", ARRIVAL), new Document("_id", id)));
+
+        Assert.assertEquals(ReportInvalidationEvent.Type.ALL, events.get(0).getType());
+        Assert.assertEquals("user", events.get(0).getAccountId());
+    }
+
+    @Test
+    public void testUpdateOfRemovedReportInvalidatesEverything() {
+        current = null;
+
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("u", new Document("$set", new Document("lunch", 0L)), new Document("_id", id)));
+
+        Assert.assertEquals(ReportInvalidationEvent.Type.ALL, events.get(0).getType());
+        Assert.assertNull(events.get(0).getAccountId());
+    }
+
+    @Test
+    public void testDeleteInvalidatesEverything() {
+        List<ReportInvalidationEvent> events = tailer.invalidations(entry("d", new Document("_id", id), null));
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(ReportInvalidationEvent.Type.ALL, events.get(0).getType());
+        Assert.assertNull(events.get(0).getAccountId());
+    }
+
+    @Test
+    public void testNoOpInvalidatesNothing() {
+        Assert.assertTrue(tailer.invalidations(entry("n", new Document("msg", "periodic noop"), null)).isEmpty());
+    }
+
+    private static Document entry(String op, Document change, Document target) {
+        Document entry = new Document("op", op).append("ns", "worktime_manager.reports").append("o", change);
+
+        return target != null ? entry.append("o2", target) : entry;
+    }
+}
@@ -0,0 +1,42 @@
+package net.svard.controllers;
+
+import net.svard.cache.ReportVersions;
+import net.svard.feed.ReportBroadcaster;
+import net.svard.ingestion.CsvReportImporter;
+import net.svard.repositories.AccountRepository;
+import net.svard.repositories.FlexLedgerRepository;
+import net.svard.repositories.ReportRepository;
+import net.svard.repositories.YearlyStatisticRepository;
+import net.svard.security.AccountResolver;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+/**
+ * The collaborators of every controller, mocked once for all controller tests. The tests
+ * share one application context, and a controller that gains a collaborator only needs it
+ * mocked here.
+ */
+public abstract class AbstractControllerTest {
+    @MockBean
+    protected ReportRepository reportRepository;
+
+    @MockBean
+    protected YearlyStatisticRepository yearlyStatisticRepository;
+
+    @MockBean
+    protected ReportVersions reportVersions;
+
+    @MockBean
+    protected AccountResolver accountResolver;
+
+    @MockBean
+    protected AccountRepository accountRepository;
+
+    @MockBean
+    protected FlexLedgerRepository flexLedgerRepository;
+
+    @MockBean
+    protected CsvReportImporter csvReportImporter;
+
+    @MockBean
+    protected ReportBroadcaster reportBroadcaster;
+}
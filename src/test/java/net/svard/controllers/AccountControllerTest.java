@@ -0,0 +1,58 @@
+package net.svard.controllers;
+
+import net.svard.domain.Account;
+import net.svard.security.ApiTokens;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootApplication
+public class AccountControllerTest extends AbstractControllerTest {
+    @Autowired
+    private AccountController controller;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        mockMvc = standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testCreateToken() throws Exception {
+        Account account = new Account();
+        account.setUsername("kristofer");
+        Mockito.when(accountRepository.findOneByUsername("kristofer")).thenReturn(account);
+
+        MvcResult result = mockMvc.perform(post("/api/account/token").principal(new TestingAuthenticationToken("kristofer", null)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        ArgumentCaptor<Account> saved = ArgumentCaptor.forClass(Account.class);
+        Mockito.verify(accountRepository).save(saved.capture());
+        String token = result.getResponse().getContentAsString().replaceFirst(".*\"token\":\"([^\"]+)\".*", "$1");
+        Assert.assertEquals(ApiTokens.hash(token), saved.getValue().getApiTokenHash());
+    }
+
+    @Test
+    public void testCreateTokenWithoutAccount() throws Exception {
+        mockMvc.perform(post("/api/account/token").principal(new TestingAuthenticationToken("user", null)))
+                .andExpect(status().isForbidden());
+
+        Mockito.verify(accountRepository, Mockito.never()).save(Mockito.any(Account.class));
+    }
+}
@@ -0,0 +1,77 @@
+package net.svard.controllers;
+
+import net.svard.domain.FlexCheckpoint;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootApplication
+public class BalanceControllerTest extends AbstractControllerTest {
+    @Autowired
+    private BalanceController controller;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        Mockito.when(accountResolver.currentAccountId()).thenReturn("user");
+        mockMvc = standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testBalance() throws Exception {
+        FlexCheckpoint checkpoint = new FlexCheckpoint();
+        checkpoint.setDay(new Date(1481241600000L));
+        checkpoint.setBalance(5400);
+        Mockito.when(flexLedgerRepository.latest("user", null)).thenReturn(checkpoint);
+
+        mockMvc.perform(get("/api/balance"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance", is(5400)))
+                .andExpect(jsonPath("$.norm", is(28800)));
+    }
+
+    @Test
+    public void testBalanceWithoutReports() throws Exception {
+        mockMvc.perform(get("/api/balance"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance", is(0)));
+    }
+
+    @Test
+    public void testBalanceAtDate() throws Exception {
+        mockMvc.perform(get("/api/balance").param("date", "2016-12-09"));
+
+        Mockito.verify(flexLedgerRepository).latest("user", new Date(1481241600000L));
+    }
+
+    @Test
+    public void testBalanceInvalidDate() throws Exception {
+        mockMvc.perform(get("/api/balance").param("date", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testBalanceRebuild() throws Exception {
+        mockMvc.perform(post("/api/balance/rebuild"))
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(flexLedgerRepository).rebuild("user");
+        Mockito.verify(flexLedgerRepository, Mockito.never()).rebuild();
+    }
+}
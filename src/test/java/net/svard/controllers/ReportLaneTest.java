@@ -0,0 +1,178 @@
+package net.svard.controllers;
+
+import com.codahale.metrics.MetricRegistry;
+import net.svard.cache.ExpiringLruCache;
+import net.svard.exceptions.LaneUnavailableException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ReportLaneTest {
+
+    private MetricRegistry metricRegistry;
+
+    private ReportLane lane;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        lane = new ReportLane("reads", 1, 2, 100, new ExpiringLruCache<>(10, 60000), metricRegistry);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        fail("user:2016");
+        Assert.assertFalse(lane.isOpen());
+        fail("user:2016");
+        Assert.assertTrue(lane.isOpen());
+
+        try {
+            lane.call("user:2016", () -> "fresh");
+            Assert.fail("Open lane should refuse work");
+        } catch (LaneUnavailableException e) {
+            Assert.assertEquals("reads", e.getLane());
+            Assert.assertEquals(1, e.getRetryAfter());
+        }
+
+        Assert.assertEquals(1, metricRegistry.counter("counter.lane.reads.short-circuited").getCount());
+    }
+
+    @Test
+    public void testServesLastGoodResultWhileOpen() {
+        Assert.assertEquals("good", lane.call("user:2016", () -> "good"));
+        fail("user:2016");
+        fail("user:2016");
+
+        Assert.assertEquals("good", lane.call("user:2016", () -> "fresh"));
+        Assert.assertEquals(3, metricRegistry.counter("counter.lane.reads.fallbacks").getCount());
+    }
+
+    @Test
+    public void testTellsFallbacksFromFreshResults() {
+        Assert.assertFalse(lane.attempt("user:2016", () -> "good").isFallback());
+
+        ReportLane.Outcome<String> outcome = lane.attempt("user:2016", () -> {
+            throw new DataAccessResourceFailureException("Timed out");
+        });
+
+        Assert.assertTrue(outcome.isFallback());
+        Assert.assertEquals("good", outcome.getValue());
+    }
+
+    @Test
+    public void testForgetsLastGoodResultsOfTheAccount() {
+        lane.call("user:2016", () -> "good");
+        lane.call("other:2016", () -> "other");
+        lane.forget("user");
+
+        try {
+            lane.call("user:2016", () -> {
+                throw new DataAccessResourceFailureException("Timed out");
+            });
+            Assert.fail("A forgotten result should not be served");
+        } catch (DataAccessResourceFailureException e) {
+            // Passed on without a last good result
+        }
+
+        Assert.assertEquals("other", lane.attempt("other:2016", () -> {
+            throw new DataAccessResourceFailureException("Timed out");
+        }).getValue());
+    }
+
+    @Test
+    public void testLastGoodResultIsPerKey() {
+        lane.call("user:2016", () -> "good");
+        fail("other:2016");
+        fail("other:2016");
+
+        try {
+            lane.call("other:2016", () -> "fresh");
+            Assert.fail("No result of the key should be served");
+        } catch (LaneUnavailableException e) {
+            Assert.assertEquals("reads", e.getLane());
+        }
+    }
+
+    @Test
+    public void testTrialCallClosesTheCircuit() throws Exception {
+        fail("user:2016");
+        fail("user:2016");
+        Thread.sleep(150);
+
+        Assert.assertEquals("fresh", lane.call("user:2016", () -> "fresh"));
+        Assert.assertFalse(lane.isOpen());
+    }
+
+    @Test
+    public void testFailedTrialReopensTheCircuit() throws Exception {
+        fail("user:2016");
+        fail("user:2016");
+        Thread.sleep(150);
+        fail("user:2016");
+
+        Assert.assertTrue(lane.isOpen());
+    }
+
+    @Test
+    public void testRequestErrorsAreNoFailures() {
+        for (int i = 0; i < 3; i++) {
+            try {
+                lane.call(null, () -> {
+                    throw new DuplicateKeyException("Report already exists");
+                });
+                Assert.fail("Duplicate key should be rethrown");
+            } catch (DuplicateKeyException e) {
+                Assert.assertFalse(lane.isOpen());
+            }
+        }
+    }
+
+    @Test
+    public void testRefusesWorkBeyondItsSlots() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> lane.call(null, () -> {
+            running.countDown();
+            await(release);
+            return "slow";
+        }));
+        holder.start();
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        try {
+            lane.call(null, () -> "fast");
+            Assert.fail("Full lane should refuse work");
+        } catch (LaneUnavailableException e) {
+            Assert.assertEquals(1, e.getRetryAfter());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        Assert.assertEquals(1, metricRegistry.counter("counter.lane.reads.rejected").getCount());
+        Assert.assertEquals("fast", lane.call(null, () -> "fast"));
+    }
+
+    private void fail(String key) {
+        try {
+            lane.call(key, () -> {
+                throw new DataAccessResourceFailureException("Timed out");
+            });
+        } catch (DataAccessResourceFailureException e) {
+            // Without a last good result the failure is passed on
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,25 +1,30 @@
 package net.svard.controllers;
 
-import net.svard.repositories.ReportRepository;
+import net.svard.domain.Statistic;
+import net.svard.exceptions.LaneUnavailableException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Date;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 
 @RunWith(SpringRunner.class)
 @SpringBootApplication
-public class StatisticsControllerTest {
-    @MockBean
-    private ReportRepository reportRepository;
-
+public class StatisticsControllerTest extends AbstractControllerTest {
     @Autowired
     private StatisticsController controller;
 
@@ -27,6 +32,7 @@ public class StatisticsControllerTest {
 
     @Before
     public void setUp() {
+        Mockito.when(accountResolver.currentAccountId()).thenReturn("user");
         mockMvc = standaloneSetup(controller).build();
     }
 
@@ -34,6 +40,66 @@ public class StatisticsControllerTest {
     public void testStatisticsQuery() throws Exception {
         mockMvc.perform(get("/api/statistics"));
 
-        Mockito.verify(reportRepository).stats();
+        Mockito.verify(yearlyStatisticRepository).rollup("user");
+    }
+
+    @Test
+    public void testStatisticsRange() throws Exception {
+        mockMvc.perform(get("/api/statistics?from=2015-07-01&to=2016-06-30&granularity=month"));
+
+        Mockito.verify(reportRepository).stats("user", new Date(1435708800000L), new Date(1467331200000L), Statistic.Granularity.MONTH);
+        Mockito.verify(yearlyStatisticRepository, Mockito.never()).rollup("user");
+    }
+
+    @Test
+    public void testStatisticsPerWeekOfAllTime() throws Exception {
+        mockMvc.perform(get("/api/statistics?granularity=week"));
+
+        Mockito.verify(reportRepository).stats("user", null, null, Statistic.Granularity.WEEK);
+    }
+
+    @Test
+    public void testStatisticsUnknownGranularity() throws Exception {
+        mockMvc.perform(get("/api/statistics?granularity=decade"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStatisticsUnavailable() throws Exception {
+        Mockito.when(reportRepository.stats("user", null, null, Statistic.Granularity.MONTH))
+                .thenThrow(new LaneUnavailableException("aggregations", 7));
+
+        MvcResult result = mockMvc.perform(get("/api/statistics?granularity=month"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    @Test
+    public void testStatisticsNotModified() throws Exception {
+        Mockito.when(reportVersions.etag("user")).thenReturn("\"v1\"");
+
+        mockMvc.perform(get("/api/statistics").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(yearlyStatisticRepository, Mockito.never()).rollup("user");
+    }
+
+    @Test
+    public void testStatisticsRebuild() throws Exception {
+        mockMvc.perform(post("/api/statistics/rebuild"));
+
+        Mockito.verify(yearlyStatisticRepository).rebuild("user");
+        Mockito.verify(yearlyStatisticRepository, Mockito.never()).rebuild();
+    }
+
+    @Test
+    public void testStatisticsCheck() throws Exception {
+        mockMvc.perform(get("/api/statistics/check"));
+
+        Mockito.verify(yearlyStatisticRepository).check("user");
     }
 }
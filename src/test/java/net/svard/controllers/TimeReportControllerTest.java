@@ -1,33 +1,57 @@
 package net.svard.controllers;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.svard.cache.ReportWindow;
+import net.svard.config.SmileHttpMessageConverter;
+import net.svard.domain.ClientReport;
+import net.svard.domain.ImportResult;
+import net.svard.domain.RejectedRow;
 import net.svard.domain.Report;
-import net.svard.repositories.ReportRepository;
+import net.svard.domain.ReportCursor;
+import net.svard.domain.ReportPatch;
+import net.svard.domain.ReportSummary;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 
 @RunWith(SpringRunner.class)
 @SpringBootApplication
-public class TimeReportControllerTest {
-    @MockBean
-    private ReportRepository reportRepository;
-
+public class TimeReportControllerTest extends AbstractControllerTest {
     @Autowired
     private TimeReportController controller;
 
@@ -35,6 +59,7 @@ public class TimeReportControllerTest {
 
     @Before
     public void setUp() {
+        Mockito.when(accountResolver.currentAccountId()).thenReturn("user");
         mockMvc = standaloneSetup(controller).build();
     }
 
@@ -42,35 +67,218 @@ public class TimeReportControllerTest {
     public void testTimereportQueryYearAndWeek() throws Exception {
         mockMvc.perform(get("/api/timereport?year=2016&week=42"));
 
-        Mockito.verify(reportRepository).findByYearAndWeek(2016, 42);
+        Mockito.verify(reportRepository).findByYearAndWeek("user", 2016, 42);
     }
 
     @Test
     public void testTimereportQueryYear() throws Exception {
         mockMvc.perform(get("/api/timereport?year=2015"));
 
-        Mockito.verify(reportRepository).findByYear(2015);
+        Mockito.verify(reportRepository).findByYear("user", 2015);
     }
 
     @Test
     public void testTimereportQueryWeek() throws Exception {
         mockMvc.perform(get("/api/timereport?week=42"));
 
-        Mockito.verify(reportRepository).findByWeek(42);
+        Mockito.verify(reportRepository).findByWeek("user", 42);
+    }
+
+    @Test
+    public void testTimereportNotModified() throws Exception {
+        Mockito.when(reportVersions.etag(ReportWindow.ofYearAndWeek("user", 2016, 42))).thenReturn("\"v1\"");
+
+        mockMvc.perform(get("/api/timereport?year=2016&week=42").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(reportRepository, Mockito.never()).findByYearAndWeek("user", 2016, 42);
+    }
+
+    @Test
+    public void testTimereportModifiedWindow() throws Exception {
+        Mockito.when(reportVersions.etag(ReportWindow.ofYearAndWeek("user", 2016, 42))).thenReturn("\"v2\"");
+
+        MvcResult result = mockMvc.perform(get("/api/timereport?year=2016&week=42").header("If-None-Match", "\"v1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v2\""));
+
+        Mockito.verify(reportRepository).findByYearAndWeek("user", 2016, 42);
+    }
+
+    @Test
+    public void testTimereportFallbackIsNotTagged() throws Exception {
+        Mockito.when(reportVersions.etag(ReportWindow.ofYearAndWeek("user", 2016, 43))).thenReturn("\"v1\"");
+        Mockito.when(reportRepository.findByYearAndWeek("user", 2016, 43))
+                .thenReturn(Collections.emptyList())
+                .thenThrow(new DataAccessResourceFailureException("Timed out"));
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/timereport?year=2016&week=43")).andReturn()))
+                .andExpect(header().string("ETag", "\"v1\""));
+
+        MvcResult result = mockMvc.perform(get("/api/timereport?year=2016&week=43"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(header().string("Warning", containsString("110")));
     }
 
     @Test
     public void testTimereport() throws Exception {
         mockMvc.perform(get("/api/timereport"));
 
-        Mockito.verify(reportRepository).findAll();
+        Mockito.verify(reportRepository).findPage("user", null, 1000);
+    }
+
+    @Test
+    public void testTimereportPage() throws Exception {
+        Report last = new Report();
+        last.setId("53f23f852cdc8826c1a2d8aa");
+        last.setArrival(new Date(1408340911000L));
+
+        Mockito.when(reportRepository.findPage(Mockito.anyString(), Mockito.any(), Mockito.anyInt())).thenReturn(Collections.singletonList(last));
+
+        MvcResult result = mockMvc.perform(get("/api/timereport?limit=1&after=1408340000000_53f23f852cdc8826c1a2d8a0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", containsString("after=1408340911000_53f23f852cdc8826c1a2d8aa")));
+
+        Mockito.verify(reportRepository).findPage("user", new ReportCursor(new Date(1408340000000L), "53f23f852cdc8826c1a2d8a0"), 1);
+    }
+
+    @Test
+    public void testTimereportSummary() throws Exception {
+        mockMvc.perform(get("/api/timereport/summary?groupBy=month&year=2016"));
+
+        Mockito.verify(reportRepository).summarize("user", 2016, ReportSummary.GroupBy.MONTH, 28800);
+    }
+
+    @Test
+    public void testTimereportSummaryUnknownGrouping() throws Exception {
+        mockMvc.perform(get("/api/timereport/summary?groupBy=fortnight&year=2016"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testTimereportMalformedCursor() throws Exception {
+        mockMvc.perform(get("/api/timereport?after=yesterday"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/timereport?after=1408340000000_notanid"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(reportRepository, Mockito.never()).findPage(Mockito.anyString(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    public void testTimereportStream() throws Exception {
+        Mockito.when(reportRepository.streamAll("user")).thenReturn(cursor(createReports()));
+
+        MvcResult result = mockMvc.perform(get("/api/timereport?stream=true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        Assert.assertTrue(result.getResponse().getContentAsString().startsWith("[{"));
+        Mockito.verify(reportRepository).streamAll("user");
+    }
+
+    @Test
+    public void testStreamNewReports() throws Exception {
+        Mockito.when(reportBroadcaster.subscribe("user")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/timereport/stream").accept(TimeReportController.EVENT_STREAM_VALUE))
+                .andExpect(request().asyncStarted());
+
+        Mockito.verify(reportBroadcaster).subscribe("user");
+    }
+
+    @Test
+    public void testExportCsv() throws Exception {
+        List<Report> reports = createReports();
+        reports.get(0).setId("53f23f852cdc8826c1a2d8aa");
+        reports.get(0).setArrival(new Date(1478501763000L));
+        Mockito.when(reportRepository.streamBetween("user", new Date(1477958400000L), new Date(1480550400000L)))
+                .thenReturn(cursor(reports));
+
+        MvcResult result = mockMvc.perform(get("/api/timereport/export?from=2016-11-01&to=2016-11-30"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("Content-Disposition", containsString("reports.csv")))
+                .andReturn();
+        result.getAsyncResult();
+
+        Assert.assertEquals("id,arrival,leave,lunch,total\n53f23f852cdc8826c1a2d8aa,2016-11-07T06:56:03Z,,3600,10000\n",
+                result.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void testExportXlsx() throws Exception {
+        Mockito.when(reportRepository.streamBetween("user", null, null)).thenReturn(cursor(createReports()));
+
+        MvcResult result = mockMvc.perform(get("/api/timereport/export?format=xlsx"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            Assert.assertEquals(1, sheet.getLastRowNum());
+            Assert.assertEquals(10000, sheet.getRow(1).getCell(4).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    public void testExportUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/timereport/export?format=pdf"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(reportRepository, Mockito.never()).streamBetween(Mockito.anyString(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        ImportResult result = new ImportResult();
+        result.setRead(1);
+        result.setImported(1);
+        result.setRejected(1);
+        result.getRejectedRows().add(new RejectedRow(2, "Missing leave", Collections.singletonMap("arrival", "2016-11-09T06:55:13Z")));
+        result.setRejectedFile("/tmp/import-1-rejected.csv");
+        Mockito.when(csvReportImporter.importReports(Mockito.any(InputStream.class), Mockito.eq("user"))).thenReturn(result);
+
+        mockMvc.perform(post("/api/timereport/import")
+                .contentType("text/csv")
+                .content("arrival,leave,lunch\n2016-11-07T06:56:03Z,2016-11-07T15:40:53Z,3600\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejectedRows[0].row").value(2))
+                .andExpect(jsonPath("$.rejectedRows[0].reason").value("Missing leave"))
+                .andExpect(jsonPath("$.rejectedFile").doesNotExist());
     }
 
     @Test
     public void testGetOneReport() throws Exception {
         mockMvc.perform(get("/api/timereport/53f23f852cdc8826c1a2d8aa"));
 
-        Mockito.verify(reportRepository).findOne("53f23f852cdc8826c1a2d8aa");
+        Mockito.verify(reportRepository).findByIdAndAccountId("53f23f852cdc8826c1a2d8aa", "user");
+    }
+
+    @Test
+    public void testGetMissingReport() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/timereport/53f23f852cdc8826c1a2d8aa"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -92,45 +300,216 @@ public class TimeReportControllerTest {
                         .content("{\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408340911000,\"leaveTime\":1408373403000}"))
         .andExpect(status().isCreated());
 
-        Mockito.verify(reportRepository).insert(report);
+        ArgumentCaptor<Report> inserted = ArgumentCaptor.forClass(Report.class);
+        Mockito.verify(reportRepository).insert(inserted.capture());
+        Assert.assertEquals(report, inserted.getValue());
+        Assert.assertEquals("user", inserted.getValue().getAccountId());
+    }
+
+    @Test
+    public void testInsertReportLeavingBeforeArrival() throws Exception {
+        mockMvc.perform(
+                post("/api/timereport")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("{\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408373403000,\"leaveTime\":1408340911000}"))
+        .andExpect(status().isBadRequest());
+
+        Mockito.verify(reportRepository, Mockito.never()).insert(Mockito.any(Report.class));
+    }
+
+    @Test
+    public void testInsertBatch() throws Exception {
+        Report existing = new Report();
+        existing.setId("53f23f852cdc8826c1a2d8aa");
+        existing.setPunchKey("clock-2@1408427311000");
+
+        Mockito.when(reportRepository.insertUnordered(Mockito.anyListOf(Report.class))).thenReturn(Collections.singleton(1));
+        Mockito.when(reportRepository.findByAccountIdAndPunchKeyIn("user", Collections.singletonList("clock-2@1408427311000"))).thenReturn(Collections.singletonList(existing));
+
+        mockMvc.perform(
+                post("/api/timereport/batch")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8)
+                        .content("[{\"clientId\":\"clock-1\",\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408340911000,\"leaveTime\":1408373403000}," +
+                                "{\"clientId\":\"clock-2\",\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408427311000,\"leaveTime\":1408459803000}," +
+                                "{\"clientId\":\"clock-3\",\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408459803000,\"leaveTime\":1408427311000}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.items[1].status").value("DUPLICATE"))
+                .andExpect(jsonPath("$.items[1].id").value("53f23f852cdc8826c1a2d8aa"))
+                .andExpect(jsonPath("$.items[2].status").value("REJECTED"));
+
+        ArgumentCaptor<List> batch = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(reportRepository).insertUnordered(batch.capture());
+        Assert.assertEquals(2, batch.getValue().size());
+    }
+
+    @Test
+    public void testInsertNdjsonBatch() throws Exception {
+        mockMvc.perform(
+                post("/api/timereport/batch")
+                        .contentType(TimeReportController.NDJSON_VALUE)
+                        .content("{\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408340911000,\"leaveTime\":1408373403000}\n" +
+                                "{\"workTime\":28892,\"lunchTime\":3600,\"arrivalTime\":1408427311000,\"leaveTime\":1408459803000}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
     }
 
     @Test
     public void testUpdateNonExistingReport() throws Exception {
-        Mockito.when(reportRepository.findOne(Mockito.anyString())).thenReturn(null);
+        Mockito.when(reportRepository.findByIdAndAccountId(Mockito.anyString(), Mockito.eq("user"))).thenReturn(null);
 
-        mockMvc.perform(put("/api/timereport/53f23f852cdc8826c1a2d8aa"))
-                .andExpect(status().is4xxClientError());
+        mockMvc.perform(put("/api/timereport/53f23f852cdc8826c1a2d8aa")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"total\":28892,\"lunch\":3600,\"arrival\":1408340911000,\"leave\":1408373403000}"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
     public void testUpdateReport() throws Exception {
-        Report report = new Report();
-        report.setId("53f23f852cdc8826c1a2d8aa");
-        report.setArrival(new Date(1408340911000L));
-        report.setLeave(new Date(1408373403000L));
-        report.setLunch(3600);
-        report.setTotal(28892);
+        Report existing = new Report();
+        existing.setId("53f23f852cdc8826c1a2d8aa");
+        existing.setAccountId("user");
+        existing.setVersion(3L);
+        Mockito.when(reportRepository.update(Mockito.eq("user"), Mockito.eq("53f23f852cdc8826c1a2d8aa"), Mockito.any(ReportPatch.class)))
+                .thenReturn(existing);
 
-        Mockito.when(reportRepository.findOne(Mockito.anyString())).thenReturn(new Report());
+        mockMvc.perform(put("/api/timereport/53f23f852cdc8826c1a2d8aa")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"total\":28892,\"lunch\":3600,\"arrival\":1408340911000,\"leave\":1408373403000,\"version\":3}"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<ReportPatch> changes = ArgumentCaptor.forClass(ReportPatch.class);
+        Mockito.verify(reportRepository).update(Mockito.eq("user"), Mockito.eq("53f23f852cdc8826c1a2d8aa"), changes.capture());
+        Assert.assertEquals(Long.valueOf(28892), changes.getValue().getTotal());
+        Assert.assertEquals(new Date(1408340911000L), changes.getValue().getArrival());
+        Assert.assertEquals(Long.valueOf(3), changes.getValue().getVersion());
+        Assert.assertNotNull(changes.getValue().getLastModified());
+        Mockito.verify(reportRepository, Mockito.never()).save(Mockito.any(Report.class));
+    }
+
+    @Test
+    public void testUpdateStaleReport() throws Exception {
+        Mockito.when(reportRepository.findByIdAndAccountId("53f23f852cdc8826c1a2d8aa", "user")).thenReturn(new Report());
 
         mockMvc.perform(put("/api/timereport/53f23f852cdc8826c1a2d8aa")
                 .contentType(MediaType.APPLICATION_JSON_UTF8)
-                .content("{\"total\":28892,\"lunch\":3600,\"arrival\":1408340911000,\"leave\":1408373403000}"));
+                .content("{\"total\":28892,\"lunch\":3600,\"arrival\":1408340911000,\"leave\":1408373403000,\"version\":2}"))
+                .andExpect(status().isConflict());
+    }
 
-        Mockito.verify(reportRepository).save(report);
+    @Test
+    public void testPatchReport() throws Exception {
+        Report existing = new Report();
+        existing.setId("53f23f852cdc8826c1a2d8aa");
+        existing.setAccountId("user");
+        existing.setArrival(new Date(1408340911000L));
+        existing.setTotal(28892);
+        Mockito.when(reportRepository.update(Mockito.eq("user"), Mockito.eq("53f23f852cdc8826c1a2d8aa"), Mockito.any(ReportPatch.class)))
+                .thenReturn(existing);
+
+        mockMvc.perform(patch("/api/timereport/53f23f852cdc8826c1a2d8aa")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"lunch\":2700}"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<ReportPatch> changes = ArgumentCaptor.forClass(ReportPatch.class);
+        Mockito.verify(reportRepository).update(Mockito.eq("user"), Mockito.eq("53f23f852cdc8826c1a2d8aa"), changes.capture());
+        Assert.assertEquals(Long.valueOf(2700), changes.getValue().getLunch());
+        Assert.assertNull(changes.getValue().getTotal());
+        Assert.assertNull(changes.getValue().getArrival());
+
+        Report patched = changes.getValue().applyTo(existing);
+        Assert.assertEquals(2700, patched.getLunch());
+        Assert.assertEquals(28892, patched.getTotal());
+        Assert.assertEquals(Long.valueOf(1), patched.getVersion());
     }
 
     @Test
     public void testTimereportModel() throws Exception {
         List<Report> reports = createReports();
-        Mockito.when(reportRepository.findAll()).thenReturn(reports);
+        Mockito.when(reportRepository.findPage("user", null, 1000)).thenReturn(reports);
 
-        mockMvc.perform(get("/api/timereport"))
+        MvcResult result = mockMvc.perform(get("/api/timereport"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().is2xxSuccessful())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8));
     }
 
+    @Test
+    public void testTimereportSmile() throws Exception {
+        Report report = new Report();
+        report.setId("53f23f852cdc8826c1a2d8aa");
+        report.setArrival(new Date(1408340911000L));
+        report.setLeave(new Date(1408373403000L));
+        report.setLunch(3600);
+        report.setTotal(28892);
+        Mockito.when(reportRepository.findByYear("user", 2014)).thenReturn(Collections.singletonList(report));
+        Mockito.when(reportVersions.etag(ReportWindow.ofYear("user", 2014))).thenReturn("\"v1\"");
+        MockMvc smileMvc = standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(), new SmileHttpMessageConverter())
+                .build();
+
+        // The JSON representation is tagged "v1", which must not revalidate the Smile one
+        MvcResult result = smileMvc.perform(get("/api/timereport?year=2014").accept(SmileHttpMessageConverter.SMILE)
+                .header("If-None-Match", "\"v1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result = smileMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SmileHttpMessageConverter.SMILE))
+                .andExpect(header().string("ETag", "\"v1-smile\""))
+                .andReturn();
+
+        List<Report> reports = new ObjectMapper(new SmileFactory())
+                .readValue(result.getResponse().getContentAsByteArray(), new TypeReference<List<Report>>() {});
+        Assert.assertEquals(Collections.singletonList(report), reports);
+    }
+
+    @Test
+    public void testInsertSmileReport() throws Exception {
+        ClientReport clientReport = new ClientReport();
+        clientReport.setWorkTime(28892);
+        clientReport.setLunchTime(3600);
+        clientReport.setArrivalTime(1408340911000L);
+        clientReport.setLeaveTime(1408373403000L);
+        Report insertedReport = new Report();
+        insertedReport.setId("123");
+        Mockito.when(reportRepository.insert(Mockito.any(Report.class))).thenReturn(insertedReport);
+        MockMvc smileMvc = standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(), new SmileHttpMessageConverter())
+                .build();
+
+        smileMvc.perform(post("/api/timereport")
+                .contentType(SmileHttpMessageConverter.SMILE)
+                .content(new ObjectMapper(new SmileFactory()).writeValueAsBytes(clientReport)))
+                .andExpect(status().isCreated());
+
+        Mockito.verify(reportRepository).insert(clientReport.toReport());
+    }
+
+    private static CloseableIterator<Report> cursor(List<Report> reports) {
+        Iterator<Report> iterator = reports.iterator();
+
+        return new CloseableIterator<Report>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Report next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     private List<Report> createReports() {
         List<Report> reports = new ArrayList<>();
         Report report = new Report();
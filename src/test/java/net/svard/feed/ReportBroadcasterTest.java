@@ -0,0 +1,146 @@
+package net.svard.feed;
+
+import com.codahale.metrics.MetricRegistry;
+import net.svard.domain.Report;
+import net.svard.events.ReportSavedEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ReportBroadcasterTest {
+
+    private MetricRegistry metricRegistry;
+
+    private ReportBroadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        broadcaster = new ReportBroadcaster(metricRegistry, 2, 60000, 2, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.close();
+    }
+
+    @Test
+    public void testSendsReportsOfTheAccountOnly() throws Exception {
+        List<Report> received = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(1);
+        broadcaster.subscribe("user", report -> {
+            received.add(report);
+            sent.countDown();
+        }, () -> {});
+
+        broadcaster.reportSaved(new ReportSavedEvent(null, report("other", "1")));
+        broadcaster.reportSaved(new ReportSavedEvent(null, report("user", "2")));
+
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("2", received.get(0).getId());
+        Assert.assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testSlowSubscriberLosesOldestReports() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        broadcaster.subscribe("user", report -> {
+            blocked.countDown();
+            await(release);
+            received.add(report.getId());
+            done.countDown();
+        }, () -> {});
+
+        broadcaster.reportSaved(new ReportSavedEvent(null, report("user", "1")));
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 2; i <= 5; i++) {
+            broadcaster.reportSaved(new ReportSavedEvent(null, report("user", String.valueOf(i))));
+        }
+
+        release.countDown();
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("1,4,5", received.stream().collect(Collectors.joining(",")));
+        Assert.assertEquals(2, metricRegistry.counter("counter.feed.dropped").getCount());
+    }
+
+    @Test
+    public void testFailedSubscriberIsRemoved() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        broadcaster.subscribe("user", report -> {
+            failed.countDown();
+            throw new IOException("Broken pipe");
+        }, () -> {});
+
+        broadcaster.reportSaved(new ReportSavedEvent(null, report("user", "1")));
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subscribers() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(0, subscribers());
+    }
+
+    @Test
+    public void testStalledSubscribersAreClosedWithoutHoldingSenders() throws Exception {
+        broadcaster.close();
+        metricRegistry = new MetricRegistry();
+        broadcaster = new ReportBroadcaster(metricRegistry, 2, 60000, 2, 200);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            broadcaster.subscribe("user", report -> await(release), closed::countDown);
+        }
+
+        CountDownLatch sent = new CountDownLatch(1);
+        broadcaster.subscribe("other", report -> sent.countDown(), () -> {});
+
+        try {
+            broadcaster.reportSaved(new ReportSavedEvent(null, report("user", "1")));
+            Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+
+            broadcaster.reportSaved(new ReportSavedEvent(null, report("other", "2")));
+            Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+
+        Assert.assertEquals(2, metricRegistry.counter("counter.feed.evicted").getCount());
+        Assert.assertEquals(1, subscribers());
+    }
+
+    private int subscribers() {
+        return (Integer) metricRegistry.getGauges().get("gauge.feed.subscribers").getValue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Report report(String accountId, String id) {
+        Report report = new Report();
+        report.setId(id);
+        report.setAccountId(accountId);
+
+        return report;
+    }
+}
@@ -0,0 +1,149 @@
+package net.svard.ingestion;
+
+import com.codahale.metrics.MetricRegistry;
+import net.svard.domain.ImportResult;
+import net.svard.domain.Report;
+import net.svard.events.ReportsImportedEvent;
+import net.svard.repositories.ReportRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CsvReportImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReportRepository reportRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Report>> batches;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        reportRepository = mock(ReportRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        when(reportRepository.insertUnordered(anyListOf(Report.class))).thenReturn(Collections.emptySet());
+        when(reportRepository.findArrivals(eq("user"), anyCollectionOf(Date.class))).thenReturn(Collections.emptySet());
+    }
+
+    @Test
+    public void testImportsRowsInBatches() throws Exception {
+        ImportResult result = newImporter(2).importReports(csv(
+                "arrival,leave,lunch,total",
+                "2016-11-07T06:56:03Z,2016-11-07T15:40:53Z,3600,27890",
+                "1478674513000,1478705731000,3600,",
+                "2016-11-14T05:35:19Z,2016-11-14T14:50:06Z,,"), "user");
+
+        Assert.assertEquals(3, result.getRead());
+        Assert.assertEquals(3, result.getImported());
+        Assert.assertNull(result.getRejectedFile());
+
+        verify(reportRepository, times(2)).insertUnordered(batches.capture());
+        Report first = batches.getAllValues().get(0).get(0);
+        Report second = batches.getAllValues().get(0).get(1);
+        Report third = batches.getAllValues().get(1).get(0);
+        Assert.assertEquals("user", first.getAccountId());
+        Assert.assertEquals(new Date(1478501763000L), first.getArrival());
+        Assert.assertEquals(27890, first.getTotal());
+        Assert.assertEquals(31218 - 3600, second.getTotal());
+        Assert.assertEquals(33287, third.getTotal());
+        verify(eventPublisher).publishEvent(any(ReportsImportedEvent.class));
+    }
+
+    @Test
+    public void testSkipsExistingAndRepeatedArrivals() throws Exception {
+        when(reportRepository.findArrivals(eq("user"), anyCollectionOf(Date.class)))
+                .thenReturn(Collections.singleton(new Date(1478501763000L)));
+
+        ImportResult result = newImporter(2).importReports(csv(
+                "arrival,leave,lunch",
+                "2016-11-07T06:56:03Z,2016-11-07T15:40:53Z,3600",
+                "2016-11-09T06:55:13Z,2016-11-09T15:35:31Z,3600",
+                "2016-11-09T06:55:13Z,2016-11-09T15:35:31Z,3600"), "user");
+
+        Assert.assertEquals(3, result.getRead());
+        Assert.assertEquals(1, result.getImported());
+        Assert.assertEquals(2, result.getDuplicates());
+    }
+
+    @Test
+    public void testWritesRejectedRows() throws Exception {
+        ImportResult result = newImporter(10).importReports(csv(
+                "arrival,leave,lunch",
+                "2016-11-07T06:56:03Z,2016-11-07T15:40:53Z,3600",
+                "2016-11-09T15:35:31Z,2016-11-09T06:55:13Z,3600",
+                "yesterday,2016-11-09T06:55:13Z,3600",
+                "2016-11-14T05:35:19Z,2016-11-14T14:50:06Z,an hour",
+                "",
+                "2016-11-15T05:35:19Z,2016-11-15T14:50:06Z,3600,31200,extra",
+                "2016-11-16T05:35:19Z,2016-11-16T14:50:06Z,3600"), "user", true);
+
+        Assert.assertEquals(2, result.getImported());
+        Assert.assertEquals(4, result.getRejected());
+
+        List<String> rejected = Files.readAllLines(Paths.get(result.getRejectedFile()));
+        Assert.assertEquals("row,reason,arrival,leave,lunch,total", rejected.get(0));
+        Assert.assertTrue(rejected.get(1).startsWith("2,\"Leave must not precede arrival\",2016-11-09T15:35:31Z"));
+        Assert.assertTrue(rejected.get(2).startsWith("3,\"Malformed arrival yesterday\""));
+        Assert.assertTrue(rejected.get(4).startsWith("6,"));
+        Assert.assertEquals(5, rejected.size());
+
+        Assert.assertEquals("Only the first rows are returned", 2, result.getRejectedRows().size());
+        Assert.assertEquals(2, result.getRejectedRows().get(0).getRow());
+        Assert.assertEquals("Leave must not precede arrival", result.getRejectedRows().get(0).getReason());
+        Assert.assertEquals("yesterday", result.getRejectedRows().get(1).getValues().get("arrival"));
+    }
+
+    @Test
+    public void testRejectedFileOnlyOnRequest() throws Exception {
+        ImportResult result = newImporter(10).importReports(csv(
+                "arrival,leave,lunch",
+                "yesterday,2016-11-09T06:55:13Z,3600"), "user");
+
+        Assert.assertEquals(1, result.getRejected());
+        Assert.assertEquals(1, result.getRejectedRows().size());
+        Assert.assertNull(result.getRejectedFile());
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testNothingImported() throws Exception {
+        ImportResult result = newImporter(10).importReports(csv("arrival,leave,lunch"), "user");
+
+        Assert.assertEquals(0, result.getRead());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private CsvReportImporter newImporter(int batchSize) {
+        return new CsvReportImporter(reportRepository, eventPublisher, new MetricRegistry(),
+                folder.getRoot().getPath(), batchSize, 2);
+    }
+
+    private static ByteArrayInputStream csv(String... lines) {
+        return new ByteArrayInputStream((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
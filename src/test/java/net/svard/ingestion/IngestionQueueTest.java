@@ -0,0 +1,155 @@
+package net.svard.ingestion;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.svard.domain.Report;
+import net.svard.events.ReportsInsertedEvent;
+import net.svard.repositories.ReportRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+public class IngestionQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReportRepository reportRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private File journal;
+
+    private File deadLetters;
+
+    @Before
+    public void setUp() throws Exception {
+        reportRepository = mock(ReportRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        journal = new File(folder.getRoot(), "ingestion.journal");
+        deadLetters = new File(folder.getRoot(), "ingestion.dead-letter");
+    }
+
+    @Test
+    public void testWritesQueuedReportsAndTruncatesJournal() throws Exception {
+        when(reportRepository.insertUnordered(anyListOf(Report.class))).thenReturn(Collections.emptySet());
+        IngestionQueue queue = newQueue(10);
+        queue.start();
+
+        Assert.assertTrue(queue.offer(report("1", 1000)));
+
+        verify(reportRepository, timeout(5000)).insertUnordered(Collections.singletonList(report("1", 1000)));
+        verify(eventPublisher, timeout(5000)).publishEvent(any(ReportsInsertedEvent.class));
+        queue.stop();
+
+        Assert.assertEquals(0, journal.length());
+    }
+
+    @Test
+    public void testReplaysJournalOnStart() throws Exception {
+        try (ReportJournal previous = new ReportJournal(journal.toPath(), objectMapper)) {
+            previous.append(report("1", 1000));
+            previous.append(report("2", 2000));
+        }
+
+        when(reportRepository.insertUnordered(anyListOf(Report.class))).thenReturn(new HashSet<>(Collections.singletonList(0)));
+        IngestionQueue queue = newQueue(10);
+        queue.start();
+        queue.stop();
+
+        List<Report> replayed = Arrays.asList(report("1", 1000), report("2", 2000));
+        verify(reportRepository).insertUnordered(replayed);
+        ArgumentCaptor<ReportsInsertedEvent> inserted = ArgumentCaptor.forClass(ReportsInsertedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(inserted.capture());
+        Assert.assertEquals(Collections.singletonList(report("2", 2000)), inserted.getValue().getReports());
+        Assert.assertEquals(0, journal.length());
+    }
+
+    @Test
+    public void testRetriesWhenMongoIsUnavailable() throws Exception {
+        when(reportRepository.insertUnordered(anyListOf(Report.class)))
+                .thenThrow(new DataAccessResourceFailureException("Timed out while waiting for a server"))
+                .thenReturn(Collections.emptySet());
+        IngestionQueue queue = newQueue(10);
+        queue.start();
+
+        Assert.assertTrue(queue.offer(report("1", 1000)));
+
+        verify(reportRepository, timeout(5000).times(2)).insertUnordered(Collections.singletonList(report("1", 1000)));
+        verify(eventPublisher, timeout(5000)).publishEvent(any(ReportsInsertedEvent.class));
+        queue.stop();
+
+        Assert.assertEquals(0, deadLetters.length());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeadLettersReportsThatCannotBeWritten() throws Exception {
+        try (ReportJournal previous = new ReportJournal(journal.toPath(), objectMapper)) {
+            previous.append(report("1", 1000));
+            previous.append(report("2", 2000));
+        }
+
+        when(reportRepository.insertUnordered(anyListOf(Report.class))).thenAnswer(invocation -> {
+            if (((List<Report>) invocation.getArguments()[0]).contains(report("1", 1000))) {
+                throw new IllegalArgumentException("Report can't be mapped");
+            }
+
+            return Collections.emptySet();
+        });
+        IngestionQueue queue = newQueue(10);
+        queue.start();
+        queue.stop();
+
+        ArgumentCaptor<ReportsInsertedEvent> inserted = ArgumentCaptor.forClass(ReportsInsertedEvent.class);
+        verify(eventPublisher).publishEvent(inserted.capture());
+        Assert.assertEquals(Collections.singletonList(report("2", 2000)), inserted.getValue().getReports());
+
+        try (ReportJournal failed = new ReportJournal(deadLetters.toPath(), objectMapper)) {
+            Assert.assertEquals(Collections.singletonList(report("1", 1000)), failed.readAll());
+        }
+    }
+
+    @Test
+    public void testRejectsWhenFull() {
+        IngestionQueue queue = newQueue(1);
+
+        Assert.assertTrue(queue.offer(report("1", 1000)));
+        Assert.assertFalse(queue.offer(report("2", 2000)));
+        Assert.assertTrue(journal.length() > 0);
+    }
+
+    private IngestionQueue newQueue(int capacity) {
+        return new IngestionQueue(reportRepository, eventPublisher, objectMapper, new MetricRegistry(),
+                journal.getPath(), deadLetters.getPath(), capacity, 100, 10);
+    }
+
+    private static Report report(String id, long arrival) {
+        Report report = new Report();
+        report.setId(id);
+        report.setTotal(28800000);
+        report.setArrival(new Date(arrival));
+        report.setLeave(new Date(arrival + 28800000));
+        report.setLastModified(new Date());
+
+        return report;
+    }
+}
@@ -0,0 +1,94 @@
+package net.svard.metrics;
+
+import com.mongodb.management.ConnectionPoolStatisticsMBean;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MongoPoolMetricsTest {
+
+    private MBeanServer server;
+
+    private MongoPoolMetrics mongoPoolMetrics;
+
+    @Before
+    public void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+        mongoPoolMetrics = new MongoPoolMetrics(server);
+    }
+
+    @Test
+    public void testPublishesEveryPool() throws Exception {
+        register("mongo-a", 20, 15, 3);
+        register("mongo-b", 4, 1, 0);
+
+        Map<String, Number> metrics = metrics();
+
+        Assert.assertEquals(20, metrics.get("mongo.pool.mongo-a-27017.size"));
+        Assert.assertEquals(15, metrics.get("mongo.pool.mongo-a-27017.checked-out"));
+        Assert.assertEquals(3, metrics.get("mongo.pool.mongo-a-27017.wait-queue"));
+        Assert.assertEquals(100, metrics.get("mongo.pool.mongo-a-27017.max"));
+        Assert.assertEquals(0.15, metrics.get("mongo.pool.mongo-a-27017.utilization").doubleValue(), 0.0001);
+        Assert.assertEquals(1, metrics.get("mongo.pool.mongo-b-27017.checked-out"));
+    }
+
+    @Test
+    public void testNoPoolsNoMetrics() {
+        Assert.assertTrue(mongoPoolMetrics.metrics().isEmpty());
+    }
+
+    private Map<String, Number> metrics() {
+        return mongoPoolMetrics.metrics().stream()
+                .collect(Collectors.toMap(Metric::getName, metric -> (Number) metric.getValue()));
+    }
+
+    private void register(String host, int size, int checkedOut, int waitQueue) throws Exception {
+        ConnectionPoolStatisticsMBean pool = new ConnectionPoolStatisticsMBean() {
+            @Override
+            public String getHost() {
+                return host;
+            }
+
+            @Override
+            public int getPort() {
+                return 27017;
+            }
+
+            @Override
+            public int getMinSize() {
+                return 0;
+            }
+
+            @Override
+            public int getMaxSize() {
+                return 100;
+            }
+
+            @Override
+            public int getSize() {
+                return size;
+            }
+
+            @Override
+            public int getCheckedOutCount() {
+                return checkedOut;
+            }
+
+            @Override
+            public int getWaitQueueSize() {
+                return waitQueue;
+            }
+        };
+
+        server.registerMBean(new StandardMBean(pool, ConnectionPoolStatisticsMBean.class),
+                new ObjectName("org.mongodb.driver:type=ConnectionPool,clusterId=1,host=" + host + ",port=27017"));
+    }
+}
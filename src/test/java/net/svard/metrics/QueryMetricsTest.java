@@ -0,0 +1,32 @@
+package net.svard.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class QueryMetricsTest {
+
+    private MetricRegistry metricRegistry;
+
+    private QueryMetrics queryMetrics;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        queryMetrics = new QueryMetrics(metricRegistry);
+    }
+
+    @Test
+    public void testTimesRoundTripAndMappingSeparately() {
+        List<Integer> results = queryMetrics.query("findByYear", () -> Arrays.asList("1", "2", "3"), Integer::valueOf);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), results);
+        Assert.assertEquals(1, metricRegistry.timer("timer.repository.findByYear.mongo").getCount());
+        Assert.assertEquals(1, metricRegistry.timer("timer.repository.findByYear.mapping").getCount());
+        Assert.assertEquals(3, metricRegistry.histogram("histogram.repository.findByYear.results").getSnapshot().getMax());
+    }
+}
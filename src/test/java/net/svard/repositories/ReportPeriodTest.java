@@ -0,0 +1,88 @@
+package net.svard.repositories;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+public class ReportPeriodTest {
+
+    @Test
+    public void testYear() {
+        ReportPeriod period = ReportPeriod.ofYear(2016);
+
+        Assert.assertEquals(new Date(1451606400000L), period.getStart());
+        Assert.assertEquals(new Date(1483228800000L), period.getEnd());
+    }
+
+    @Test
+    public void testWeekStartsOnFirstSunday() {
+        // 2016-01-03 is the first Sunday of 2016
+        ReportPeriod period = ReportPeriod.ofYearAndWeek(2016, 1);
+
+        Assert.assertEquals(new Date(1451779200000L), period.getStart());
+        Assert.assertEquals(new Date(1452384000000L), period.getEnd());
+    }
+
+    @Test
+    public void testWeekZero() {
+        ReportPeriod period = ReportPeriod.ofYearAndWeek(2016, 0);
+
+        Assert.assertEquals(new Date(1451606400000L), period.getStart());
+        Assert.assertEquals(new Date(1451779200000L), period.getEnd());
+    }
+
+    @Test
+    public void testWeekIsClampedToYear() {
+        ReportPeriod period = ReportPeriod.ofYearAndWeek(2016, 53);
+
+        Assert.assertEquals(new Date(1483228800000L), period.getEnd());
+        Assert.assertTrue(period.isEmpty());
+    }
+
+    @Test
+    public void testContains() {
+        ReportPeriod period = ReportPeriod.ofYearAndWeek(2016, 45);
+
+        Assert.assertTrue(period.contains(new Date(1478501763000L)));
+        Assert.assertFalse(period.contains(new Date(1479106519000L)));
+    }
+
+    @Test
+    public void testWeekOf() {
+        Assert.assertEquals(0, ReportPeriod.weekOf(new Date(1451606400000L)));
+        Assert.assertEquals(1, ReportPeriod.weekOf(new Date(1451779200000L)));
+        Assert.assertEquals(45, ReportPeriod.weekOf(new Date(1478501763000L)));
+        Assert.assertEquals(46, ReportPeriod.weekOf(new Date(1479106519000L)));
+    }
+
+    @Test
+    public void testWeekOfIsInsideItsPeriod() {
+        Date date = new Date(1479365724000L);
+
+        Assert.assertTrue(ReportPeriod.ofYearAndWeek(2016, ReportPeriod.weekOf(date)).contains(date));
+    }
+
+    @Test
+    public void testSplitByYear() {
+        // 2015-07-01 until 2017-03-01
+        List<ReportPeriod> parts = ReportPeriod.between(new Date(1435708800000L), new Date(1488326400000L)).splitByYear();
+
+        Assert.assertEquals(3, parts.size());
+        Assert.assertEquals(new Date(1435708800000L), parts.get(0).getStart());
+        Assert.assertEquals(ReportPeriod.ofYear(2015).getEnd(), parts.get(0).getEnd());
+        Assert.assertEquals(ReportPeriod.ofYear(2016).getStart(), parts.get(1).getStart());
+        Assert.assertEquals(ReportPeriod.ofYear(2016).getEnd(), parts.get(1).getEnd());
+        Assert.assertEquals(ReportPeriod.ofYear(2017).getStart(), parts.get(2).getStart());
+        Assert.assertEquals(new Date(1488326400000L), parts.get(2).getEnd());
+    }
+
+    @Test
+    public void testSplitByYearEndingAtNewYear() {
+        List<ReportPeriod> parts = ReportPeriod.between(new Date(1435708800000L), ReportPeriod.ofYear(2015).getEnd()).splitByYear();
+
+        Assert.assertEquals(1, parts.size());
+        Assert.assertTrue(ReportPeriod.between(new Date(1488326400000L), new Date(1435708800000L)).splitByYear().isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package net.svard.security;
+
+import net.svard.domain.Account;
+import net.svard.repositories.AccountRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+public class AccountDetailsServiceTest {
+
+    private AccountRepository accountRepository;
+
+    private AccountDetailsService accountDetailsService;
+
+    @Before
+    public void setUp() {
+        accountRepository = Mockito.mock(AccountRepository.class);
+        accountDetailsService = new AccountDetailsService(accountRepository, 16, 60);
+    }
+
+    @Test
+    public void testCachesUsernameLookups() {
+        Account account = new Account();
+        account.setUsername("kristofer");
+        Mockito.when(accountRepository.findOneByUsername("kristofer")).thenReturn(account);
+
+        Assert.assertSame(account, accountDetailsService.loadUserByUsername("kristofer"));
+        Assert.assertSame(account, accountDetailsService.loadUserByUsername("kristofer"));
+        Mockito.verify(accountRepository, Mockito.times(1)).findOneByUsername("kristofer");
+
+        accountDetailsService.invalidateAll();
+        accountDetailsService.loadUserByUsername("kristofer");
+        Mockito.verify(accountRepository, Mockito.times(2)).findOneByUsername("kristofer");
+    }
+
+    @Test(expected = UsernameNotFoundException.class)
+    public void testUnknownUsername() {
+        accountDetailsService.loadUserByUsername("nobody");
+    }
+
+    @Test
+    public void testLooksUpTokensByHash() {
+        Account account = new Account();
+        String token = ApiTokens.generate();
+        Mockito.when(accountRepository.findOneByApiTokenHash(ApiTokens.hash(token))).thenReturn(account);
+
+        Assert.assertSame(account, accountDetailsService.loadAccountByApiToken(token));
+        Assert.assertSame(account, accountDetailsService.loadAccountByApiToken(token));
+        Assert.assertNull(accountDetailsService.loadAccountByApiToken(ApiTokens.generate()));
+        Mockito.verify(accountRepository, Mockito.times(1)).findOneByApiTokenHash(ApiTokens.hash(token));
+    }
+}
@@ -0,0 +1,67 @@
+package net.svard.security;
+
+import net.svard.domain.Account;
+import net.svard.repositories.AccountRepository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class AccountResolverTest {
+
+    private AccountRepository accountRepository;
+
+    @Before
+    public void setUp() {
+        accountRepository = Mockito.mock(AccountRepository.class);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testResolvesAuthenticatedAccount() {
+        Account account = new Account();
+        account.setId("58a1f3c2e4b0a1b2c3d4e5f6");
+        account.setUsername("kristofer");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(account, null, account.getAuthorities()));
+
+        Assert.assertEquals("58a1f3c2e4b0a1b2c3d4e5f6", new AccountResolver(accountRepository, "").currentAccountId());
+    }
+
+    @Test
+    public void testResolvesAnonymousToDefaultOwner() {
+        Account owner = new Account();
+        owner.setId("58a1f3c2e4b0a1b2c3d4e5f6");
+        Mockito.when(accountRepository.findOneByUsername("kristofer")).thenReturn(owner);
+        SecurityContextHolder.getContext().setAuthentication(
+                new AnonymousAuthenticationToken("key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        Assert.assertEquals("58a1f3c2e4b0a1b2c3d4e5f6", new AccountResolver(accountRepository, "kristofer").currentAccountId());
+    }
+
+    @Test
+    public void testPicksUpDefaultOwnerAccountCreatedLater() {
+        Account owner = new Account();
+        owner.setId("58a1f3c2e4b0a1b2c3d4e5f6");
+        Mockito.when(accountRepository.findOneByUsername("kristofer")).thenReturn(null).thenReturn(owner);
+        AccountResolver resolver = new AccountResolver(accountRepository, "kristofer");
+
+        Assert.assertEquals("kristofer", resolver.defaultAccountId());
+        Assert.assertEquals("58a1f3c2e4b0a1b2c3d4e5f6", resolver.defaultAccountId());
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void testRefusesAnonymousWithoutDefaultOwner() {
+        new AccountResolver(accountRepository, "").currentAccountId();
+    }
+}
@@ -1,4 +1,5 @@
 var path = require("path");
+var CompressionPlugin = require("compression-webpack-plugin");
 
 module.exports = {
   entry: {
@@ -48,6 +49,17 @@ module.exports = {
     noParse: /\.elm$/,
   },
 
+  plugins: [
+    // Served by Spring's resource chain to clients that accept gzip
+    new CompressionPlugin({
+      asset: '[path].gz[query]',
+      algorithm: 'gzip',
+      test: /\.js$/,
+      threshold: 2048,
+      minRatio: 0.8
+    })
+  ],
+
   devServer: {
     inline: true,
     stats: { colors: true },